@@ -0,0 +1,407 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.BinRegistry;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.stock.PartChangeListener;
+import com.cameronbarnes.mercury.util.BinarySnapshot;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves the progress of the count in the background as the user works, so that a crash doesn't lose the whole shift.
+ * Edits to parts are collected as they happen, and several times a second any new edits are appended to a WriteAheadLog in the autosave's save directory, with a single fsync for the whole batch.
+ * Every so often the log is rolled up into a single BinarySnapshot of the bins, using the same layout as a normal saved session, so the autosave shows up on the resume screen like any other save.
+ * All the file writing happens on the autosave thread, the listener that runs on the EDT only records the edit.
+ * The bins and parts belong to the EDT, so the snapshot is copied out of them over on the EDT, along with the edits still waiting to go in the log,
+ * and the autosave thread only ever writes that copy
+ */
+public final class AutoSave implements PartChangeListener {
+	
+	public static final String AUTOSAVE_SUFFIX = " autosave";
+	
+	// This is how long edits wait to be grouped together before they're written, so a burst of scans only costs one write and one fsync
+	private static final long FLUSH_INTERVAL_MILLIS = 500;
+	private static final int COMPACT_AFTER_RECORDS = 2000;
+	private static final long COMPACT_INTERVAL_MILLIS = 60000;
+	
+	private final File mSaveFolder;
+	private ScheduledExecutorService mExecutor;
+	
+	// Edits waiting to be written, in the order they were made
+	private ArrayList<WriteAheadLog.Entry> mPending = new ArrayList<>();
+	private BinRegistry mBins;
+	private boolean mNeedsSnapshot = false;
+	// Bumped whenever the bins being watched are swapped out or thrown away, so a copy taken before that isn't written after it
+	private int mGeneration = 0;
+	
+	// Everything below is only touched while holding mWriteLock
+	private final Object mWriteLock = new Object();
+	private File mSaveDir;
+	private WriteAheadLog mLog;
+	private int mLogRecords = 0;
+	private int mSnapshotBins = 0;
+	private long mLastCompact = System.currentTimeMillis();
+	
+	/**
+	 * @param saveFolder the folder to put the autosave in, each session gets its own directory in here named after the time it was first saved
+	 */
+	public AutoSave(File saveFolder) {
+		mSaveFolder = saveFolder;
+	}
+	
+	/**
+	 * Starts writing out changes in the background every few seconds
+	 */
+	public synchronized void start() {
+		
+		if (mExecutor != null)
+			return;
+		
+		mExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Mercury-AutoSave");
+			thread.setDaemon(true);
+			return thread;
+		});
+		mExecutor.scheduleWithFixedDelay(this::save, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		
+	}
+	
+	/**
+	 * Starts watching the provided bins for changes, replacing whatever bins were being watched before. A full snapshot is taken on the next save
+	 * @param bins the session's bins
+	 */
+	public synchronized void track(BinRegistry bins) {
+		
+		if (mBins == bins)
+			return;
+		
+		if (mBins != null)
+			mBins.removePartChangeListener(this);
+		mBins = bins;
+		mBins.addPartChangeListener(this);
+		mNeedsSnapshot = true;
+		mGeneration++;
+		
+	}
+	
+	@Override
+	public synchronized void partChanged(Part part, Part.PartProperty property, Object oldValue, Object newValue) {
+		mPending.add(new WriteAheadLog.Entry(part.getBinNum(), part.getWarehouse(), part.getPartNumber(), property, oldValue, newValue));
+	}
+	
+	/**
+	 * Writes out any changes since the last save, this is what the background thread runs a couple of times a second. Anything that goes wrong is just logged, we'll try again next time
+	 */
+	public void save() {
+		
+		try {
+			
+			boolean snapshot;
+			synchronized (this) {
+				snapshot = mNeedsSnapshot;
+				mNeedsSnapshot = false;
+			}
+			
+			boolean compact;
+			boolean always;
+			synchronized (mWriteLock) {
+				
+				flush();
+				
+				// Bins being added or removed doesn't go in the log, so every so often we also take a look and roll things up if the bins have changed since the last snapshot
+				boolean due = System.currentTimeMillis() - mLastCompact >= COMPACT_INTERVAL_MILLIS;
+				compact = snapshot || due || mLogRecords >= COMPACT_AFTER_RECORDS;
+				always = snapshot || mLogRecords > 0;
+				
+			}
+			
+			// This waits on the EDT, so it can't happen while we're holding the write lock, discard() takes that lock on the EDT
+			if (compact)
+				compact(always);
+			
+		}
+		catch (IOException | RuntimeException e) { // TODO handle this with the HomeAPI
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * Appends the edits made since the last flush to the log, as one batch
+	 * @throws IOException if the log can't be written to
+	 */
+	void flush() throws IOException {
+		
+		synchronized (mWriteLock) {
+			
+			List<WriteAheadLog.Entry> entries;
+			synchronized (this) {
+				entries = mPending;
+				mPending = new ArrayList<>();
+			}
+			append(entries);
+			
+		}
+		
+	}
+	
+	private void append(List<WriteAheadLog.Entry> entries) throws IOException {
+		
+		if (entries.isEmpty())
+			return;
+		getLog().append(entries);
+		mLogRecords += entries.size();
+		
+	}
+	
+	/**
+	 * Writes a full snapshot of the bins and then clears the log, since everything in it is now in the snapshot
+	 * This has to be called without holding the write lock, since it waits for the EDT to copy the bins
+	 * @throws IOException if the snapshot can't be written
+	 */
+	void compact() throws IOException {
+		compact(true);
+	}
+	
+	/**
+	 * @param always false to skip writing the snapshot if nothing's been logged and the number of bins hasn't changed since the last one
+	 */
+	private void compact(boolean always) throws IOException {
+		
+		Capture capture = capture();
+		if (capture == null)
+			return;
+		
+		synchronized (mWriteLock) {
+			
+			// If the bins were swapped out or thrown away while we were waiting for the write lock, this copy isn't of anything we're saving anymore
+			synchronized (this) {
+				if (capture.generation() != mGeneration)
+					return;
+			}
+			
+			// These edits are all in the copy, but they go in the log first so they're still saved if writing the snapshot fails
+			append(capture.pending());
+			
+			if (!always && mLogRecords == 0 && capture.bins().size() == mSnapshotBins) {
+				mLastCompact = System.currentTimeMillis();
+				return;
+			}
+			
+			// If all the bins are gone there's nothing worth resuming, so we'll get rid of the autosave instead of leaving an empty one around
+			if (capture.bins().isEmpty()) {
+				deleteSaveDir();
+				return;
+			}
+			
+			// The snapshot is written to a temp file, synced and moved over the old one, so a crash part way through never leaves a half written snapshot,
+			// and by the time this returns the new snapshot is on the disk, which it has to be before the log can be emptied
+			BinarySnapshot.write(capture.bins(), new File(getSaveDir(), BinarySnapshot.FILE_NAME));
+			FileSystemUtils.writeManifest(capture.bins(), getSaveDir());
+			
+			// Every edit that had been made when the copy was taken is in the snapshot, and anything since is still waiting in mPending, so the log can go
+			getLog().reset();
+			mLogRecords = 0;
+			mSnapshotBins = capture.bins().size();
+			mLastCompact = System.currentTimeMillis();
+			
+		}
+		
+	}
+	
+	/**
+	 * A copy of the bins taken on the EDT, and the edits that were waiting to be logged at that moment, so the copy is exactly the last snapshot plus the log plus those edits
+	 * @param bins copies of the bins, nothing else has a reference to these
+	 * @param pending the edits that hadn't been written to the log yet
+	 * @param generation which set of bins this is a copy of
+	 */
+	private record Capture(List<Bin> bins, List<WriteAheadLog.Entry> pending, int generation) {
+	}
+	
+	/**
+	 * Copies the bins over on the EDT, since that's the only thread that changes them
+	 * @return the copy, or null if we were interrupted while waiting for it
+	 * @throws IOException if copying the bins threw
+	 */
+	private Capture capture() throws IOException {
+		
+		AtomicReference<Capture> capture = new AtomicReference<>();
+		Runnable copy = () -> {
+			synchronized (this) {
+				List<Bin> bins = mBins == null ? List.of() : mBins.getOrderedBins().stream().map(Bin::copy).toList();
+				capture.set(new Capture(bins, mPending, mGeneration));
+				mPending = new ArrayList<>();
+			}
+		};
+		
+		if (SwingUtilities.isEventDispatchThread()) {
+			copy.run();
+			return capture.get();
+		}
+		
+		try {
+			SwingUtilities.invokeAndWait(copy);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (InvocationTargetException e) {
+			throw new IOException("Couldn't copy the bins for the autosave", e.getCause());
+		}
+		return capture.get();
+		
+	}
+	
+	/**
+	 * Stops tracking the session and deletes the autosave, this is for when the count has been finished or properly saved, or the user doesn't want it anymore
+	 * The next change after this starts a new autosave directory
+	 */
+	public void discard() {
+		
+		synchronized (this) {
+			if (mBins != null)
+				mBins.removePartChangeListener(this);
+			mBins = null;
+			mPending.clear();
+			mNeedsSnapshot = false;
+			mGeneration++;
+		}
+		
+		synchronized (mWriteLock) {
+			deleteSaveDir();
+		}
+		
+	}
+	
+	/**
+	 * @return the directory this session is being saved to, creating it along with the layout a saved session needs if it doesn't exist yet
+	 */
+	@SuppressWarnings("ResultOfMethodCallIgnored")
+	private File getSaveDir() {
+		
+		if (mSaveDir == null) {
+			mSaveDir = new File(mSaveFolder, Date.from(Instant.now()).toString().replace(":", "-") + AUTOSAVE_SUFFIX);
+		}
+		new File(mSaveDir, "stockstatus").mkdirs();
+		return mSaveDir;
+		
+	}
+	
+	private WriteAheadLog getLog() throws IOException {
+		
+		if (mLog == null) {
+			mLog = new WriteAheadLog(new File(getSaveDir(), WriteAheadLog.FILE_NAME));
+		}
+		return mLog;
+		
+	}
+	
+	private void deleteSaveDir() {
+		
+		if (mLog != null) {
+			try {
+				mLog.close();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+			mLog = null;
+		}
+		
+		if (mSaveDir != null) {
+			FileSystemUtils.deleteDir(mSaveDir);
+			mSaveDir = null;
+		}
+		mLogRecords = 0;
+		mSnapshotBins = 0;
+		
+	}
+	
+	/**
+	 * Reads the write ahead log in a save directory, if there is one, and applies the edits in it to the bins loaded from that directory's snapshot
+	 * Edits for bins or parts that aren't in the snapshot are skipped
+	 * @param saveDir the save directory
+	 * @param bins the bins loaded from the save directory
+	 */
+	public static void replayLog(File saveDir, List<Bin> bins) {
+		
+		List<WriteAheadLog.Entry> entries;
+		try {
+			entries = WriteAheadLog.read(new File(saveDir, WriteAheadLog.FILE_NAME));
+		}
+		catch (IOException e) { // TODO handle this with the HomeAPI
+			e.printStackTrace();
+			return;
+		}
+		
+		if (entries.isEmpty())
+			return;
+		
+		HashMap<String, Part> parts = new HashMap<>();
+		for (Bin bin: bins) {
+			for (Part part: bin.getParts()) {
+				parts.put(key(part.getBinNum(), part.getWarehouse(), part.getPartNumber()), part);
+			}
+		}
+		
+		for (WriteAheadLog.Entry entry: entries) {
+			Part part = parts.get(key(entry.bin(), entry.warehouse(), entry.part()));
+			if (part != null) {
+				entry.apply(part);
+			}
+		}
+		
+		// Restoring the edits doesn't go through the bins, so they need to count their parts needing adjustment again
+		bins.forEach(Bin::recountNeedsAdjustment);
+		
+	}
+	
+	private static String key(String bin, String warehouse, String part) {
+		return bin + '\u0000' + warehouse + '\u0000' + part;
+	}
+	
+	/**
+	 * Finds the most recent autosave left in the folder. The autosave is deleted whenever the app closes properly, so if there's one here the last run must have crashed
+	 * @param saveFolder the folder saved sessions are kept in
+	 * @return an Optional with the autosave's directory, or an empty Optional if there isn't one
+	 */
+	public static Optional<File> findLatestAutoSave(File saveFolder) {
+		
+		File[] files = saveFolder.listFiles();
+		if (files == null)
+			return Optional.empty();
+		
+		return Arrays.stream(files).filter(File::isDirectory).filter(file -> file.getName().endsWith(AUTOSAVE_SUFFIX)).max(Comparator.comparingLong(File::lastModified));
+		
+	}
+	
+}
@@ -0,0 +1,356 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.stock.PartSearchIndex;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Runs a whole count without any UI, for reconciling overnight scanner dumps on a server. It ingests a folder of stockstatus files, adds up the counts from a csv file
+ * or a scanner log, auto adjusts every part, and exports the result. Nothing here touches Swing, so none of it gets started up.
+ * The counts file is read as a csv if it ends in .csv, with one part number, quantity, and optional bin number per line. Anything else is read as a scanner log, one scan per line,
+ * where a bin number picks the bin, a part number counts one of that part, and a quantity straight after a part number means that many of it were counted instead of one
+ */
+public final class BatchJob {
+	
+	public static final String USAGE = """
+			Usage: --batch [--job FILE] [--input DIR] [--counts FILE] [--output FILE] [--auto-adjust]
+			  --job FILE      a properties file with any of input, counts, output, and autoAdjust, relative paths are from the job file's folder
+			  --input DIR     the folder of stockstatus files to ingest, or a single file, defaults to the import folder, the files are left where they are
+			  --counts FILE   a .csv of part number, quantity, and optional bin number, or a scanner log
+			  --output FILE   the Excel file to export the count to, this is overwritten if it already exists
+			  --auto-adjust   auto adjust parts even if auto adjustment is turned off in the options
+			Arguments given on the command line override the ones in the job file""";
+	
+	private final File mInput;
+	private final File mCounts; // Null if there aren't any counts to apply
+	private final File mOutput;
+	private final boolean mAutoAdjust;
+	
+	private int mNumCounted;
+	private int mNumUnmatched;
+	
+	/**
+	 * What happened in a batch run
+	 * @param numBins the number of bins ingested
+	 * @param numParts the number of parts in those bins
+	 * @param numCounted the number of count lines that were applied to a part
+	 * @param numUnmatched the number of count lines that didn't match any bin or part, or couldn't be read
+	 * @param numNeedsAdjustment the number of parts whose count still doesn't match after auto adjusting
+	 */
+	public record Result(int numBins, int numParts, int numCounted, int numUnmatched, int numNeedsAdjustment) {
+	}
+	
+	/**
+	 * @param input the folder or single stockstatus file to ingest
+	 * @param counts the csv or scanner log to read counts from, or null for none
+	 * @param output the file to export to
+	 * @param autoAdjust true to auto adjust even if the options don't allow it
+	 */
+	public BatchJob(File input, File counts, File output, boolean autoAdjust) {
+		mInput = input;
+		mCounts = counts;
+		mOutput = output;
+		mAutoAdjust = autoAdjust;
+	}
+	
+	/**
+	 * Reads a job from the command line arguments that came after --batch
+	 * @param args the arguments
+	 * @return the job
+	 * @throws IllegalArgumentException if the arguments don't make sense, or there's no output file
+	 * @throws IOException if there's a job file and it can't be read
+	 */
+	public static BatchJob fromArgs(String[] args) throws IOException {
+		
+		Properties properties = new Properties();
+		File base = new File(".");
+		
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--auto-adjust")) {
+				properties.setProperty("autoAdjust", "true");
+				continue;
+			}
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing a value for " + arg);
+			String value = args[++i];
+			switch (arg) {
+				case "--job" -> {
+					// The job file goes underneath anything given on the command line
+					File job = new File(value);
+					Properties fromFile = new Properties();
+					try (Reader reader = Files.newBufferedReader(job.toPath(), StandardCharsets.UTF_8)) {
+						fromFile.load(reader);
+					}
+					fromFile.putAll(properties);
+					properties = fromFile;
+					base = job.getAbsoluteFile().getParentFile();
+				}
+				case "--input" -> properties.setProperty("input", value);
+				case "--counts" -> properties.setProperty("counts", value);
+				case "--output" -> properties.setProperty("output", value);
+				default -> throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		
+		if (properties.getProperty("output") == null)
+			throw new IllegalArgumentException("There's nowhere to export the count to, we need an output file");
+		
+		String counts = properties.getProperty("counts");
+		return new BatchJob(
+				resolve(base, properties.getProperty("input", Options.IMPORT_FOLDER.getPath())),
+				counts == null ? null : resolve(base, counts),
+				resolve(base, properties.getProperty("output")),
+				Boolean.parseBoolean(properties.getProperty("autoAdjust", "false"))
+		);
+		
+	}
+	
+	private static File resolve(File base, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(base, path);
+	}
+	
+	/**
+	 * Runs batch mode from the command line, this sets up everything Main would but without a window
+	 * @param args the arguments that came after --batch
+	 * @return the exit code, 0 if the count was exported
+	 */
+	public static int runFromCommandLine(String[] args) {
+		
+		System.setProperty("java.awt.headless", "true");
+		
+		BatchJob job;
+		try {
+			job = fromArgs(args);
+		}
+		catch (IllegalArgumentException | IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return 1;
+		}
+		
+		FileSystemUtils.createProjectDirs();
+		Options options = FileSystemUtils.readOptions();
+		if (job.mAutoAdjust)
+			options.setAllowedAutoAdjustment(true); // The options aren't written back in batch mode, so this only lasts for this run
+		
+		// Batch mode can't be resumed from the UI, so the session isn't autosaved
+		Session session = new Session(options);
+		Optional<Result> result;
+		try {
+			result = job.run(session);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			result = Optional.empty();
+		}
+		if (result.isEmpty()) {
+			System.err.println("The count couldn't be exported to " + job.mOutput);
+			return 1;
+		}
+		
+		Result r = result.get();
+		System.out.println("Exported " + r.numBins() + " bins, " + r.numParts() + " parts to " + job.mOutput);
+		System.out.println("Applied " + r.numCounted() + " counts, " + r.numUnmatched() + " didn't match anything, " + r.numNeedsAdjustment() + " parts still need adjusting");
+		return 0;
+		
+	}
+	
+	/**
+	 * Runs the job against a session, which should be empty
+	 * @param session the session to run in
+	 * @return what happened, or an empty Optional if the count couldn't be exported
+	 * @throws IOException if the counts file can't be read
+	 */
+	public Optional<Result> run(Session session) throws IOException {
+		
+		mNumCounted = 0;
+		mNumUnmatched = 0;
+		
+		// The input is only read, unlike the ingest page we don't move the files into the process folder
+		Ingest.merge(Ingest.getStockStatusFiles(mInput), session.getUnprotectedOptions().getScanClassifier(), session.getBinRegistry()::putIfNewer, () -> {}, () -> false);
+		session.binsIngested();
+		
+		if (mCounts != null) {
+			if (mCounts.getName().toLowerCase().endsWith(".csv"))
+				applyCsvCounts(session);
+			else
+				applyScannerLog(session);
+		}
+		
+		for (Bin bin: session.getBins()) {
+			for (Part part: bin.getParts()) {
+				part.autoAdjustment(session.getUnprotectedOptions());
+			}
+		}
+		
+		// The session is emptied out once the count is exported, so we need to tally everything up first
+		Result result = new Result(session.getBinRegistry().size(), session.getBinRegistry().getNumParts(), mNumCounted, mNumUnmatched,
+				session.getBinRegistry().getNumNeedsAdjustment());
+		
+		if (!session.done(mOutput))
+			return Optional.empty();
+		return Optional.of(result);
+		
+	}
+	
+	private void applyCsvCounts(Session session) throws IOException {
+		
+		try (BufferedReader reader = Files.newBufferedReader(mCounts.toPath(), StandardCharsets.UTF_8)) {
+			
+			String line;
+			boolean first = true;
+			while ((line = reader.readLine()) != null) {
+				
+				if (line.isBlank())
+					continue;
+				
+				String[] cells = line.split(",");
+				for (int i = 0; i < cells.length; i++) {
+					cells[i] = unquote(cells[i].strip());
+				}
+				
+				int quantity;
+				try {
+					if (cells.length < 2)
+						throw new NumberFormatException();
+					quantity = Integer.parseInt(cells[1]);
+				}
+				catch (NumberFormatException e) {
+					if (!first) { // The first line is allowed to be the titles
+						System.out.println("Debug: Couldn't read the count line " + line);
+						mNumUnmatched++;
+					}
+					first = false;
+					continue;
+				}
+				first = false;
+				
+				Bin bin = null;
+				if (cells.length > 2 && !cells[2].isEmpty()) {
+					int index = session.getBinIndex(cells[2]);
+					if (index < 0) {
+						System.out.println("Debug: Bin " + cells[2] + " from the counts isn't in the session");
+						mNumUnmatched++;
+						continue;
+					}
+					bin = session.getBins().get(index);
+				}
+				
+				count(session, bin, cells[0], quantity);
+				
+			}
+			
+		}
+		
+	}
+	
+	private void applyScannerLog(Session session) throws IOException {
+		
+		ScanClassifier classifier = session.getUnprotectedOptions().getScanClassifier();
+		
+		try (BufferedReader reader = Files.newBufferedReader(mCounts.toPath(), StandardCharsets.UTF_8)) {
+			
+			Bin bin = null;
+			Part last = null; // The last part scanned, if a quantity comes next it's for this part
+			String line;
+			while ((line = reader.readLine()) != null) {
+				
+				if (line.isBlank())
+					continue;
+				
+				ScanClassifier.Scan scan = classifier.classify(line);
+				switch (scan.type()) {
+					case BIN_NUMBER -> {
+						int index = session.getBinIndex(scan.value());
+						bin = index < 0 ? null : session.getBins().get(index);
+						last = null;
+						if (bin == null) {
+							System.out.println("Debug: Bin " + scan.value() + " from the scanner log isn't in the session");
+							mNumUnmatched++;
+						}
+					}
+					case PART_NUMBER -> last = count(session, bin, scan.value(), 1);
+					case QUANTITY -> {
+						if (last != null) {
+							// We already counted one when the part was scanned
+							last.setCountedQuantity(last.getCountedQuantity() + scan.quantity() - 1);
+						} else {
+							System.out.println("Debug: Quantity " + scan.value() + " in the scanner log doesn't follow a part number");
+							mNumUnmatched++;
+						}
+						last = null;
+					}
+					case COMMAND -> last = null;
+					default -> {
+						System.out.println("Debug: Couldn't tell what " + scan.value() + " in the scanner log is");
+						mNumUnmatched++;
+						last = null;
+					}
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Adds to the counted quantity of a part, looking in the bin first and then anywhere in the session, same as scanning in the count form
+	 * @return the part that was counted, or null if it couldn't be found
+	 */
+	private Part count(Session session, Bin bin, String partNumber, int quantity) {
+		
+		Part part = null;
+		if (bin != null) {
+			int index = bin.indexOfPart(partNumber);
+			if (index >= 0)
+				part = bin.getParts().get(index);
+		}
+		if (part == null)
+			part = session.getPartSearchIndex().findPartNumber(partNumber).stream().findFirst().map(PartSearchIndex.PartLocation::part).orElse(null);
+		
+		if (part == null) {
+			System.out.println("Debug: Part " + partNumber + " from the counts isn't in the session");
+			mNumUnmatched++;
+			return null;
+		}
+		
+		part.setCountedQuantity(part.getCountedQuantity() + quantity);
+		mNumCounted++;
+		return part;
+		
+	}
+	
+	private static String unquote(String cell) {
+		if (cell.length() >= 2 && cell.startsWith("\"") && cell.endsWith("\""))
+			return cell.substring(1, cell.length() - 1).replace("\"\"", "\"");
+		return cell;
+	}
+	
+}
@@ -57,4 +57,9 @@ public interface IUnprotectedOptions {
 	 */
 	int getFontSize();
 	
+	/**
+	 * @return a classifier for scanned input using the part and bin number formats set for this site
+	 */
+	ScanClassifier getScanClassifier();
+	
 }
@@ -18,14 +18,26 @@
 package com.cameronbarnes.mercury.core;
 
 import com.cameronbarnes.mercury.excel.ExcelImporter;
+import com.cameronbarnes.mercury.excel.StockStatusReaders;
 import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.BinRegistry;
 import com.cameronbarnes.mercury.util.FileSystemUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 
 public final class Ingest {
 	
@@ -54,85 +66,217 @@ public final class Ingest {
 		if (dir == null) {
 			return;
 		}
-		File[] files;
-		if (dir.isDirectory()) {
-			files = dir.listFiles();
-			if (files == null) {
-				files = new File[]{};
-			}
-		} else {
-			files = new File[]{dir};
-		}
-		
-		ingest(add, List.of(files));
+		ingest(add, getStockStatusFiles(dir));
 	
 	}
 	
 	/**
 	 * Import stockstatus files from the import folder
+	 * The files are parsed in parallel on a worker pool, but the results are merged into the session one at a time in the same order as the list,
+	 * so the outcome is the same as parsing them one after another
 	 * @param add true for add the new bins to the current bins in the session object or false to replace them with only the new ones
 	 * @param files A list of individual files to import from
 	 */
 	public void ingest(boolean add, List<File> files) {
 		
-		ArrayList<Bin> bins = new ArrayList<>();
-		
 		if (files == null || files.isEmpty()) return;
 		
+		BinRegistry bins = add ? mSession.getBinRegistry() : new BinRegistry();
+		
+		ingest(getStockStatusFiles(files), mSession.getUnprotectedOptions().getScanClassifier(), bins::putIfNewer, () -> {}, () -> false);
+		
+		if (!add) {
+			mSession.setBinRegistry(bins);
+		}
+		
+	}
+	
+	/**
+	 * Import stockstatus files into whatever the merge function puts them in, one file at a time in the same order as the list.
+	 * This is the part of the ingest the IngestWorker runs off the EDT, it merges the bins on the EDT and needs to be able to stop part way through.
+	 * The files for the bins that were kept are moved to the process folder once we're done, even if we were cancelled, anything we didn't get to is left where it is
+	 * @param files the stockstatus files to import, these shouldn't include any directories
+	 * @param classifier the site's classifier, a bin with a bin number it doesn't recognize is skipped
+	 * @param merge gets each bin as it's parsed, and returns true if the bin was kept, in which case the file it came from gets moved
+	 * @param onFileDone run after each file has been dealt with, whether there was a bin in it or not
+	 * @param cancelled checked before each file, once it returns true we stop parsing
+	 * @return the number of files that had a bin that was kept
+	 */
+	static int ingest(List<File> files, ScanClassifier classifier, Predicate<Bin> merge, Runnable onFileDone, BooleanSupplier cancelled) {
+		
+		List<File> processed = merge(files, classifier, merge, onFileDone, cancelled);
+		
+		// We'll do all the moves together at the end rather than between parsing files
+		moveToProcessFolder(processed);
+		return processed.size();
+		
+	}
+	
+	/**
+	 * Same as ingest, but without moving any of the files, batch mode uses this so it doesn't empty out a folder it was only asked to read
+	 * @param files the stockstatus files to import, these shouldn't include any directories
+	 * @param classifier the site's classifier, a bin with a bin number it doesn't recognize is skipped
+	 * @param merge gets each bin as it's parsed, and returns true if the bin was kept
+	 * @param onFileDone run after each file has been dealt with, whether there was a bin in it or not
+	 * @param cancelled checked before each file, once it returns true we stop parsing
+	 * @return the files that had a bin that was kept, in the order they were parsed
+	 */
+	static List<File> merge(List<File> files, ScanClassifier classifier, Predicate<Bin> merge, Runnable onFileDone, BooleanSupplier cancelled) {
+		
+		ArrayList<File> kept = new ArrayList<>();
+		
+		parseStockStatusFiles(files, classifier, (file, bin) -> {
+			// If there's already a bin with the same bin number we'll only keep the newer of the two, and we only move the file if we're keeping the bin that came from it
+			if (bin.isPresent() && merge.test(bin.get())) {
+				kept.add(file);
+			}
+			onFileDone.run();
+		}, cancelled);
+		
+		return kept;
+		
+	}
+	
+	/**
+	 * @param dir a directory of stockstatus files, or a single stockstatus file
+	 * @return the stockstatus files in the directory, or just the file itself, without any sub directories
+	 */
+	static List<File> getStockStatusFiles(File dir) {
+		
+		if (!dir.isDirectory())
+			return getStockStatusFiles(List.of(dir));
+		
+		File[] files = dir.listFiles();
+		return files == null ? new ArrayList<>() : getStockStatusFiles(List.of(files));
+		
+	}
+	
+	/**
+	 * @param files a list of files which may have directories and other kinds of files mixed in
+	 * @return just the files with a stockstatus extension
+	 */
+	static List<File> getStockStatusFiles(List<File> files) {
+		
+		ArrayList<File> stockStatusFiles = new ArrayList<>();
 		for (File file: files) {
 			
-			if (file.isDirectory()) continue;
+			// The extension only tells us it's worth a look, the importer works out the actual format from the start of the file, and skips anything it can't read
+			if (file.isDirectory() || !StockStatusReaders.hasStockStatusExtension(file)) continue;
 			
-			String extension = FileSystemUtils.getLastSubstring(file.toString(), ".");
-			if (!extension.equals("xls") && !extension.equals("xlsx")) continue;
+			stockStatusFiles.add(file);
 			
-			ExcelImporter.importBinFromStockStatusFile(file).ifPresent(bin -> {
+		}
+		return stockStatusFiles;
+		
+	}
+	
+	/**
+	 * Parses each of the provided stockstatus files into a bin, the parsing is done on a pool of worker threads, but the results are handed to the consumer
+	 * one at a time on the calling thread, in the same order as the list of files
+	 * Only a limited number of files are parsed ahead of the consumer, so we don't hold hundreds of parsed bins in memory at once
+	 * @param files the files to parse
+	 * @param classifier the bin numbers are checked against this classifier's bin number format
+	 * @param consumer receives each file along with the bin parsed from it, or an empty Optional if the file doesn't contain a valid bin
+	 * @param cancelled checked before each file is handed to the consumer, once it returns true any files still being parsed are thrown away
+	 */
+	private static void parseStockStatusFiles(List<File> files, ScanClassifier classifier, BiConsumer<File, Optional<Bin>> consumer, BooleanSupplier cancelled) {
+		parseStockStatusFiles(files, classifier, consumer, cancelled, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Same as above, but with the size of the pool given, so the tests can check the pool gives the same result as parsing the files one at a time
+	 * @param maxThreads the most threads to parse on, 1 parses everything on the calling thread
+	 */
+	static void parseStockStatusFiles(List<File> files, ScanClassifier classifier, BiConsumer<File, Optional<Bin>> consumer, BooleanSupplier cancelled, int maxThreads) {
+		
+		int threads = Math.min(files.size(), maxThreads);
+		
+		// There's no point spinning up a pool for a single file
+		if (threads <= 1) {
+			for (File file: files) {
+				if (cancelled.getAsBoolean())
+					return;
+				consumer.accept(file, parseStockStatusFile(file, classifier));
+			}
+			return;
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Mercury-Ingest");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		try {
+			
+			int window = threads * 2; // How many files we allow to be parsed ahead of the merge
+			ArrayDeque<Future<Optional<Bin>>> inFlight = new ArrayDeque<>(window);
+			Iterator<File> toSubmit = files.iterator();
+			
+			for (File file: files) {
 				
-				// We're going to check if any of the existing bins are the same as the one we're trying to add here
-				// If they are we're only going to keep the newer of the two
-				for (Bin old: mSession.getBins()) {
-					
-					// For right now I think I'm only going to check for the bin number, but I may change my mind later
-					if (old.getBinNum().equals(bin.getBinNum())/* && old.getWarehouse().equals(bin.getWarehouse())*/) {
-						
-						if (old.getFileTime() != null && old.getFileTime().compareTo(bin.getFileTime()) < 0) {
-							
-							mSession.getBins().remove(old);
-							mSession.getBins().add(bin);
-							
-							try {
-								FileSystemUtils.moveSafe(file.toPath(), Path.of(Options.PROCESS_FOLDER.getPath() + File.separator + file.getName()));
-							}
-							catch (FileNotFoundException e) { //Pretty sure this shouldn't ever happen, but we'll leave it here just in case
-								e.printStackTrace();
-							}
-							
-						}
-						
-						// If there's a matching bin we'll either remove the old one and add the new above, or discard and continue
-						return;
-						
-					}
-					
+				if (cancelled.getAsBoolean())
+					return;
+				
+				while (inFlight.size() < window && toSubmit.hasNext()) {
+					File next = toSubmit.next();
+					inFlight.add(pool.submit(() -> parseStockStatusFile(next, classifier)));
 				}
 				
-				// If we get here then there is no matching bin, so we'll add this one
-				mSession.getBins().add(bin);
+				Optional<Bin> bin;
 				try {
-					FileSystemUtils.moveSafe(file.toPath(), Path.of(Options.PROCESS_FOLDER.getPath() + File.separator + file.getName()));
+					bin = inFlight.remove().get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
 				}
-				catch (FileNotFoundException e) { //Pretty sure this shouldn't ever happen, but we'll leave it here just in case
+				catch (ExecutionException e) { // parseStockStatusFile already catches everything, so this really shouldn't happen
 					e.printStackTrace();
+					bin = Optional.empty();
 				}
 				
-			});
+				consumer.accept(file, bin);
+				
+			}
 			
+		} finally {
+			pool.shutdownNow();
 		}
 		
-		if (!add) {
-			mSession.setBins(bins);
-		} else {
-			mSession.getBins().addAll(bins);
+	}
+	
+	/**
+	 * Parses a single stockstatus file, a file that fails to parse shouldn't stop the rest of the ingest, so any exception is just logged
+	 * @param file the file to parse
+	 * @param classifier the bin number is checked against this classifier's bin number format
+	 * @return an Optional Bin if the file contains valid data
+	 */
+	private static Optional<Bin> parseStockStatusFile(File file, ScanClassifier classifier) {
+		
+		try {
+			return ExcelImporter.importBinFromStockStatusFile(file, classifier);
+		}
+		catch (RuntimeException e) { // TODO handle this with the HomeAPI
+			e.printStackTrace();
+			return Optional.empty();
+		}
+		
+	}
+	
+	/**
+	 * Moves all the provided files into the process folder
+	 * @param files the files to move
+	 */
+	private static void moveToProcessFolder(List<File> files) {
+		
+		for (File file: files) {
+			try {
+				FileSystemUtils.moveSafe(file.toPath(), Path.of(Options.PROCESS_FOLDER.getPath() + File.separator + file.getName()));
+			}
+			catch (FileNotFoundException e) { //Pretty sure this shouldn't ever happen, but we'll leave it here just in case
+				e.printStackTrace();
+			}
 		}
 		
 	}
@@ -0,0 +1,130 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+
+import javax.swing.*;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports stockstatus files into the session off the EDT, so dropping a few hundred files on the ingest page doesn't freeze the window until they're all read.
+ * The parsing happens in the background, but each bin is merged into the session on the EDT, since that's where the ingest table is reading the bins from,
+ * and the table is told about each bin as it's added so it fills in while the files are being read.
+ * Progress is reported through the normal SwingWorker progress property as a percentage of the files looked at.
+ * It can be stopped with requestCancel, the bins that were already added stay in the session and their files are still moved to the process folder,
+ * and any files we hadn't got to yet are left where they are
+ */
+public final class IngestWorker extends SwingWorker<Integer, Void> {
+	
+	private final Session mSession;
+	private final List<File> mFiles;
+	private final Consumer<Bin> mOnBinAdded;
+	private final Runnable mOnFinished;
+	// We don't use SwingWorker.cancel, that calls done() straight away while the files we've already merged might still be waiting to be moved
+	private final AtomicBoolean mCancelRequested = new AtomicBoolean();
+	
+	/**
+	 * @param session the session to add the bins to
+	 * @param files the files and directories of files to import, anything that isn't a stockstatus file is skipped
+	 * @param onBinAdded run on the EDT with each bin that gets added to the session, either as a new bin or replacing an older one with the same bin number
+	 * @param onFinished run on the EDT once the ingest is finished or has stopped after being cancelled
+	 */
+	public IngestWorker(Session session, List<File> files, Consumer<Bin> onBinAdded, Runnable onFinished) {
+		mSession = session;
+		mFiles = files;
+		mOnBinAdded = onBinAdded;
+		mOnFinished = onFinished;
+	}
+	
+	/**
+	 * Stops the ingest after the file it's currently on, this can be called from any thread
+	 */
+	public void requestCancel() {
+		mCancelRequested.set(true);
+	}
+	
+	public boolean isCancelRequested() {
+		return mCancelRequested.get();
+	}
+	
+	@Override
+	protected Integer doInBackground() {
+		
+		// Listing a directory can take a while on a network drive, so we do that back here too
+		List<File> files = mFiles.stream().flatMap(file -> Ingest.getStockStatusFiles(file).stream()).toList();
+		
+		int total = Math.max(1, files.size());
+		AtomicInteger done = new AtomicInteger();
+		
+		int added = Ingest.ingest(files, mSession.getUnprotectedOptions().getScanClassifier(), this::mergeOnEDT, () -> setProgress(Math.min(100, done.incrementAndGet() * 100 / total)), mCancelRequested::get);
+		
+		setProgress(100);
+		return added;
+		
+	}
+	
+	/**
+	 * Adds the bin to the session over on the EDT and waits for it, so we know whether it was kept and its file needs moving
+	 * @param bin the bin to add
+	 * @return true if the bin was added to the session
+	 */
+	private boolean mergeOnEDT(Bin bin) {
+		
+		AtomicBoolean added = new AtomicBoolean();
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				if (mSession.getBinRegistry().putIfNewer(bin)) {
+					added.set(true);
+					mOnBinAdded.accept(bin);
+				}
+			});
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			mCancelRequested.set(true); // Nothing should be interrupting us, but if something does we'll treat it the same as the user cancelling
+		}
+		catch (InvocationTargetException e) {
+			e.printStackTrace(); // TODO handle this with the HomeAPI
+		}
+		return added.get();
+		
+	}
+	
+	@Override
+	protected void done() {
+		
+		try {
+			System.out.println("Debug: Ingested " + get() + " stockstatus files" + (isCancelRequested() ? " before being cancelled" : ""));
+		}
+		catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace(); // TODO handle this with the HomeAPI
+		}
+		
+		mSession.binsIngested();
+		mOnFinished.run();
+		
+	}
+	
+}
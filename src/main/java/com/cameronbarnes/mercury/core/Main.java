@@ -23,6 +23,8 @@ import com.cameronbarnes.mercury.util.FileSystemUtils;
 import javax.swing.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.Arrays;
+import java.util.Optional;
 import java.util.ResourceBundle;
 
 public class Main {
@@ -32,12 +34,25 @@ public class Main {
 	
 	public static void main(String[] args) {
 		
+		// Batch mode runs a whole count from the command line, it has to go before anything that would start up Swing
+		if (args.length > 0 && args[0].equals("--batch")) {
+			System.exit(BatchJob.runFromCommandLine(Arrays.copyOfRange(args, 1, args.length)));
+			return;
+		}
+		
 		FileSystemUtils.createProjectDirs();
 		
 		Options options = FileSystemUtils.readOptions();
 		
 		MainFrame mainFrame = new MainFrame(options);
-		Session session = new Session(mainFrame, options);
+		AutoSave autoSave = new AutoSave(Options.SAVED_ONGOING_FOLDER);
+		Session session = new Session(options, autoSave);
+		autoSave.start();
+		session.addSessionListener(mainFrame);
+		// For debug purposes only
+		if (DEBUG) {
+			mainFrame.setDebugDataAction(session);
+		}
 		
 		if (options.setVersion(VERSION)) {
 			mainFrame.showChangeLog();
@@ -50,6 +65,7 @@ public class Main {
 			public void windowClosing(WindowEvent e) {
 				super.windowClosing(e);
 				
+				boolean keepAutoSave = false;
 				if (mainFrame.isCount() && !session.getBins().isEmpty()) {
 					String[] choices = new String[]{bundle.getString("word_save"), bundle.getString("word_dont_save")};
 					int choice = JOptionPane.showOptionDialog(
@@ -63,7 +79,8 @@ public class Main {
 							choices[0]
 					);
 					if (choice == 0) {
-						FileSystemUtils.saveOngoing(session.getBins());
+						// If the save failed the autosave is all that's left of the count, so we keep it to be picked back up next time we start
+						keepAutoSave = !FileSystemUtils.saveOngoing(session.getBins());
 					} else {
 						FileSystemUtils.moveAllFromProcessToIngest();
 					}
@@ -71,12 +88,23 @@ public class Main {
 					FileSystemUtils.moveAllFromProcessToIngest();
 				}
 				
+				// Either the progress has just been saved properly or the user doesn't want it, so we don't need the autosave anymore
+				if (!keepAutoSave)
+					session.discardAutoSave();
 				FileSystemUtils.writeOptions(options);
 				System.exit(0);
 			}
 		});
 		
-		session.mainMenu();
+		// The autosave is deleted whenever we close properly, so if there's one left over the last run crashed, and we'll pick the count back up where it left off
+		Optional<SavedOngoing> crashed = AutoSave.findLatestAutoSave(Options.SAVED_ONGOING_FOLDER).flatMap(FileSystemUtils::getSavedSessionFromDir);
+		if (crashed.isPresent()) {
+			FileSystemUtils.moveFilesFromSavedSession(crashed.get());
+			session.setBins(crashed.get().getBins());
+			session.count();
+		} else {
+			session.mainMenu();
+		}
 	
 	}
 	
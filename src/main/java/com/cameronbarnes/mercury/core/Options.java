@@ -46,11 +46,17 @@ public final class Options implements IUnprotectedOptions {
 	private transient ResourceBundle mBundle;
 	private final Map<String, Boolean> mShowPartProperties = new TreeMap<>();
 	
+	// The formats for scanned input, these vary between sites so they're kept in the options
+	private String mPartNumberPattern = ScanClassifier.DEFAULT_PART_NUMBER_PATTERN;
+	private String mBinNumberPattern = ScanClassifier.DEFAULT_BIN_NUMBER_PATTERN;
+	private String mCommandPrefix = ScanClassifier.DEFAULT_COMMAND_PREFIX;
+	private final Map<String, String> mWarehouseBinPatterns = new TreeMap<>();
+	private transient ScanClassifier mScanClassifier;
+	
 	public Options() {
 		
 		//Setting up showPartProperty stuff here, we'll fill this with default values for now
 		ensureAllNewPropertiesArePresent();
-		generateFont();
 		
 	}
 	
@@ -104,6 +110,47 @@ public final class Options implements IUnprotectedOptions {
 		return  mIsAllowedAutoAdjustment;
 	}
 	
+	/**
+	 * @return a classifier for scanned input using the patterns in the options, it's only rebuilt when the patterns change
+	 */
+	@Override
+	public ScanClassifier getScanClassifier() {
+		
+		if (mScanClassifier == null)
+			mScanClassifier = new ScanClassifier(mPartNumberPattern, mBinNumberPattern, mCommandPrefix, mWarehouseBinPatterns);
+		return mScanClassifier;
+		
+	}
+	
+	/**
+	 * @param partNumberPattern the regex a whole part number matches
+	 * @param binNumberPattern the regex a whole bin number matches
+	 * @param commandPrefix what a scanned command starts with
+	 */
+	public void setScanPatterns(String partNumberPattern, String binNumberPattern, String commandPrefix) {
+		
+		mPartNumberPattern = partNumberPattern;
+		mBinNumberPattern = binNumberPattern;
+		mCommandPrefix = commandPrefix;
+		mScanClassifier = null;
+		
+	}
+	
+	/**
+	 * @param warehouse the warehouse that has its own bin number format
+	 * @param binNumberPattern the regex a whole bin number in that warehouse matches, or null to go back to the normal format
+	 */
+	public void setWarehouseBinPattern(String warehouse, String binNumberPattern) {
+		
+		if (binNumberPattern == null) {
+			mWarehouseBinPatterns.remove(warehouse);
+		} else {
+			mWarehouseBinPatterns.put(warehouse, binNumberPattern);
+		}
+		mScanClassifier = null;
+		
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		
@@ -128,6 +175,10 @@ public final class Options implements IUnprotectedOptions {
 		if (!mLocale.equals(opt.mLocale))
 			return false;
 		
+		if (!mPartNumberPattern.equals(opt.mPartNumberPattern) || !mBinNumberPattern.equals(opt.mBinNumberPattern) ||
+				    !mCommandPrefix.equals(opt.mCommandPrefix) || !mWarehouseBinPatterns.equals(opt.mWarehouseBinPatterns))
+			return false;
+		
 		return this.mVersion.equals(opt.mVersion);
 		
 	}
@@ -153,10 +204,19 @@ public final class Options implements IUnprotectedOptions {
 		if (mVersion == null)
 			mVersion = Main.VERSION;
 		
+		if (mPartNumberPattern == null)
+			mPartNumberPattern = ScanClassifier.DEFAULT_PART_NUMBER_PATTERN;
+		if (mBinNumberPattern == null)
+			mBinNumberPattern = ScanClassifier.DEFAULT_BIN_NUMBER_PATTERN;
+		if (mCommandPrefix == null)
+			mCommandPrefix = ScanClassifier.DEFAULT_COMMAND_PREFIX;
+		mScanClassifier = null;
+		
 	}
 	
 	/**
-	 * We're using this to generate a custom font object which has the desired font size instead of creating the object over and over again when we need it
+	 * We're using this to generate a custom font object which has the desired font size instead of creating the object over and over again when we need it.
+	 * Getting the base font means starting up Swing, so this isn't done until something asks for the font, that way batch mode never has to pay for it
 	 */
 	public void generateFont() {
 		
@@ -171,12 +231,15 @@ public final class Options implements IUnprotectedOptions {
 	 */
 	@Override
 	public Font getFont() {
+		if (mFont == null)
+			generateFont();
 		return mFont;
 	}
 	
 	public void setFontSize(int size) {
 		mFontSize = size;
-		generateFont();
+		if (mFont != null)
+			generateFont();
 	}
 	
 	/**
@@ -0,0 +1,94 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a saved session and moves its stockstatus files back to the process folder off the EDT, so resuming a big session doesn't freeze the window.
+ * Progress is reported through the normal SwingWorker progress property as a percentage of the bins read and files moved,
+ * and once it's finished the bins are handed to the session and the count page is opened, all on the EDT
+ */
+public final class ResumeWorker extends SwingWorker<ArrayList<Bin>, Void> {
+	
+	private final Session mSession;
+	private final SavedOngoing mSavedOngoing;
+	private final Runnable mOnFailed;
+	
+	/**
+	 * @param session the session to resume into
+	 * @param savedOngoing the saved session to resume
+	 * @param onFailed run on the EDT if the bins can't be loaded, the saved session is left where it is when that happens
+	 */
+	public ResumeWorker(Session session, SavedOngoing savedOngoing, Runnable onFailed) {
+		mSession = session;
+		mSavedOngoing = savedOngoing;
+		mOnFailed = onFailed;
+	}
+	
+	@Override
+	protected ArrayList<Bin> doInBackground() {
+		
+		int numFiles = mSavedOngoing.getNumStockStatusFiles();
+		int total = Math.max(1, mSavedOngoing.getNumBins() + numFiles);
+		AtomicInteger done = new AtomicInteger();
+		// The bins are read on a bunch of threads at once, setProgress is fine with that and only fires on the EDT when the value actually changes
+		Runnable step = () -> setProgress(Math.min(100, done.incrementAndGet() * 100 / total));
+		
+		ArrayList<Bin> bins = mSavedOngoing.loadBins(step);
+		if (bins.isEmpty())
+			return bins;
+		
+		// We only move the files once we know we've got the bins, otherwise we'd be throwing the saved session away for nothing
+		FileSystemUtils.moveFilesFromSavedSession(mSavedOngoing, step);
+		setProgress(100);
+		return bins;
+		
+	}
+	
+	@Override
+	protected void done() {
+		
+		ArrayList<Bin> bins;
+		try {
+			bins = get();
+		}
+		catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace(); // TODO handle this with the HomeAPI
+			bins = new ArrayList<>();
+		}
+		
+		if (bins.isEmpty()) {
+			System.out.println("Debug: Failed to load the bins for the saved session " + mSavedOngoing.getSaveDir().getName());
+			mOnFailed.run();
+			return;
+		}
+		
+		mSession.setBins(bins);
+		mSession.count();
+		
+	}
+	
+}
@@ -18,18 +18,23 @@
 package com.cameronbarnes.mercury.core;
 
 import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.stream.Collectors;
 
 public final class SavedOngoing {
 	
 	private final File mSaveDir;
-	private final ArrayList<Bin> mBins;
+	private final SessionManifest mManifest;
+	private ArrayList<Bin> mBins;
+	private int mNumStockStatusFiles = -1;
 	
 	/**
 	 * This class handles holding the data for saving ongoing cycle count progress to disk and reading it from the disk.
@@ -40,16 +45,68 @@ public final class SavedOngoing {
 	public SavedOngoing(File saveDir, ArrayList<Bin> bins) {
 		
 		mSaveDir = saveDir;
+		mManifest = null;
 		mBins = bins;
 		
 	}
 	
+	/**
+	 * A saved session that's only been read as far as its manifest, the bins aren't loaded from the disk until something asks for them
+	 * @param saveDir The directory the session was saved to
+	 * @param manifest the manifest that was saved with the session
+	 */
+	public SavedOngoing(File saveDir, SessionManifest manifest) {
+		
+		mSaveDir = saveDir;
+		mManifest = manifest;
+		mBins = null;
+		mNumStockStatusFiles = manifest.numStockStatusFiles();
+		
+	}
+	
+	/**
+	 * The stockstatus files don't change once the session is saved, so we only need to count them once
+	 */
 	public int getNumStockStatusFiles() {
-		return (int) Arrays.stream(Objects.requireNonNull(new File(mSaveDir.getAbsolutePath() + File.separator + "stockstatus").listFiles())).dropWhile(File::isDirectory).count();
+		
+		if (mNumStockStatusFiles < 0) {
+			mNumStockStatusFiles = (int) Arrays.stream(Objects.requireNonNull(new File(mSaveDir.getAbsolutePath() + File.separator + "stockstatus").listFiles())).dropWhile(File::isDirectory).count();
+		}
+		return mNumStockStatusFiles;
+		
 	}
 	
+	/**
+	 * @return the bins in the session, loading them from the disk the first time this is called if this session was only read from its manifest.
+	 * If they can't be loaded the list is empty
+	 */
 	public ArrayList<Bin> getBins() {
+		return loadBins(() -> {});
+	}
+	
+	/**
+	 * Same as getBins, but reports each bin as it's read so a progress bar can follow along. This is meant to be called off the EDT
+	 * @param onBinRead called once for each bin read from the disk, from any thread. It isn't called at all if the bins are already loaded
+	 * @return the bins in the session, or an empty list if they can't be loaded
+	 */
+	public ArrayList<Bin> loadBins(Runnable onBinRead) {
+		
+		if (mBins == null) {
+			mBins = FileSystemUtils.readSessionBins(mSaveDir, onBinRead).orElseGet(ArrayList::new);
+		}
 		return mBins;
+		
+	}
+	
+	/**
+	 * @return the number of bins in the session, without loading them if we have a manifest
+	 */
+	public int getNumBins() {
+		return mBins == null ? mManifest.bins().size() : mBins.size();
+	}
+	
+	public boolean isLoaded() {
+		return mBins != null;
 	}
 	
 	public File getSaveDir() {
@@ -62,6 +119,9 @@ public final class SavedOngoing {
 	 */
 	private String getBinsStr() {
 		
+		if (mBins == null)
+			return mManifest.bins().stream().map(SessionManifest.BinSummary::binNum).collect(Collectors.joining(" "));
+		
 		StringBuilder sb = new StringBuilder();
 		mBins.forEach(bin -> {sb.append(bin.getBinNum()); sb.append(" ");});
 		return sb.toString().trim();
@@ -94,8 +154,19 @@ public final class SavedOngoing {
 		if (getNumStockStatusFiles() != s.getNumStockStatusFiles())
 			return false;
 		
+		// Comparing shouldn't load every part of every bin off the disk, so unless both sides already have their bins loaded we only compare what the manifest has
+		if (mBins == null || s.mBins == null)
+			return getBinSummaries().equals(s.getBinSummaries());
+		
 		return mBins.stream().allMatch(bin -> s.mBins.stream().anyMatch(bin2 -> bin2.equals(bin)));
 		
 	}
 	
+	/**
+	 * @return the manifest's summary of each bin, or the same summary made from the bins if they're already loaded
+	 */
+	private List<SessionManifest.BinSummary> getBinSummaries() {
+		return mBins == null ? mManifest.bins() : SessionManifest.of(mBins, getNumStockStatusFiles()).bins();
+	}
+	
 }
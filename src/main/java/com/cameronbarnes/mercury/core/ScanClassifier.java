@@ -0,0 +1,178 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Works out what someone has scanned or typed into a scan field. The patterns are compiled once when the classifier is made instead of on every scan,
+ * and commands and quantities are checked by hand without a regex at all.
+ * The part and bin number formats come from the options, since they aren't the same at every site, and a warehouse can have its own bin number format
+ */
+public final class ScanClassifier {
+	
+	public static final String DEFAULT_PART_NUMBER_PATTERN = "\\w+\\.\\w+\\.\\w+";
+	public static final String DEFAULT_BIN_NUMBER_PATTERN = "[A-Za-z]{4}-\\d{4}";
+	public static final String DEFAULT_COMMAND_PREFIX = "!";
+	
+	private static final Pattern DEFAULT_PART_NUMBER = Pattern.compile(DEFAULT_PART_NUMBER_PATTERN);
+	private static final Pattern DEFAULT_BIN_NUMBER = Pattern.compile(DEFAULT_BIN_NUMBER_PATTERN);
+	
+	public enum ScanType {
+		PART_NUMBER,
+		BIN_NUMBER,
+		QUANTITY,
+		COMMAND,
+		UNKNOWN
+	}
+	
+	/**
+	 * @param type what we think the input is
+	 * @param value the trimmed input, or for a command just the command without the prefix
+	 */
+	public record Scan(ScanType type, String value) {
+		
+		/**
+		 * @return the quantity, only valid if the type is QUANTITY
+		 */
+		public int quantity() {
+			return Integer.parseInt(value);
+		}
+		
+	}
+	
+	// Just the default patterns, for anything that doesn't have a site's options to go by
+	public static final ScanClassifier DEFAULT = new ScanClassifier(DEFAULT_PART_NUMBER_PATTERN, DEFAULT_BIN_NUMBER_PATTERN, DEFAULT_COMMAND_PREFIX, Map.of());
+	
+	private final Pattern mPartNumberPattern;
+	private final Pattern mBinNumberPattern;
+	private final String mCommandPrefix;
+	private final HashMap<String, Pattern> mWarehouseBinPatterns = new HashMap<>();
+	
+	/**
+	 * Any pattern that isn't a valid regex is replaced with the default for that pattern, so a typo in the options can't stop the count.
+	 * A warehouse pattern falls back to the normal bin number pattern, after that has already fallen back itself if it needed to
+	 * @param partNumberPattern the regex a whole part number matches
+	 * @param binNumberPattern the regex a whole bin number matches
+	 * @param commandPrefix what a scanned command starts with
+	 * @param warehouseBinPatterns bin number regexes for warehouses that don't use the normal format, by warehouse
+	 */
+	public ScanClassifier(String partNumberPattern, String binNumberPattern, String commandPrefix, Map<String, String> warehouseBinPatterns) {
+		
+		mPartNumberPattern = compile(partNumberPattern, DEFAULT_PART_NUMBER);
+		mBinNumberPattern = compile(binNumberPattern, DEFAULT_BIN_NUMBER);
+		mCommandPrefix = commandPrefix == null || commandPrefix.isEmpty() ? DEFAULT_COMMAND_PREFIX : commandPrefix;
+		warehouseBinPatterns.forEach((warehouse, pattern) -> mWarehouseBinPatterns.put(warehouse, compile(pattern, mBinNumberPattern)));
+		
+	}
+	
+	private static Pattern compile(String pattern, Pattern fallback) {
+		
+		if (pattern == null)
+			return fallback;
+		
+		try {
+			return Pattern.compile(pattern);
+		}
+		catch (PatternSyntaxException e) {
+			System.out.println("Debug: Invalid scan pattern " + pattern + ", using " + fallback.pattern() + " instead");
+			return fallback;
+		}
+		
+	}
+	
+	/**
+	 * Works out what the input is in one go, checking for a command first, then the bin and part number patterns, and then a quantity
+	 * @param input what was scanned or typed
+	 * @return what we think it is, UNKNOWN if it isn't anything we recognize
+	 */
+	public Scan classify(String input) {
+		
+		if (input == null)
+			return new Scan(ScanType.UNKNOWN, "");
+		
+		String value = input.strip();
+		if (value.isEmpty())
+			return new Scan(ScanType.UNKNOWN, value);
+		
+		if (value.startsWith(mCommandPrefix))
+			return new Scan(ScanType.COMMAND, value.substring(mCommandPrefix.length()).strip());
+		// Bin and part numbers go before quantities, in case a site has bin or part numbers that are all digits
+		if (isBinNumber(value))
+			return new Scan(ScanType.BIN_NUMBER, value);
+		if (isPartNumber(value))
+			return new Scan(ScanType.PART_NUMBER, value);
+		if (isQuantity(value))
+			return new Scan(ScanType.QUANTITY, value);
+		
+		return new Scan(ScanType.UNKNOWN, value);
+		
+	}
+	
+	public boolean isPartNumber(String input) {
+		return mPartNumberPattern.matcher(input).matches();
+	}
+	
+	/**
+	 * @param input the text to check
+	 * @return true if the input matches the normal bin number format, or the format of any warehouse that has its own
+	 */
+	public boolean isBinNumber(String input) {
+		
+		if (mBinNumberPattern.matcher(input).matches())
+			return true;
+		for (Pattern pattern: mWarehouseBinPatterns.values()) {
+			if (pattern.matcher(input).matches())
+				return true;
+		}
+		return false;
+		
+	}
+	
+	/**
+	 * @param input the text to check
+	 * @param warehouse the warehouse the bin is in
+	 * @return true if the input matches the bin number format for that warehouse
+	 */
+	public boolean isBinNumber(String input, String warehouse) {
+		return mWarehouseBinPatterns.getOrDefault(warehouse, mBinNumberPattern).matcher(input).matches();
+	}
+	
+	/**
+	 * A whole number, optionally with a sign, that fits in an int
+	 */
+	private static boolean isQuantity(String value) {
+		
+		int start = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+		int length = value.length() - start;
+		if (length == 0 || length > 9) // Anything longer than 9 digits might not fit in an int, and nobody has that many of anything
+			return false;
+		for (int i = start; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+		
+	}
+	
+}
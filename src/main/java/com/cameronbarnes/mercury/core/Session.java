@@ -18,112 +18,229 @@
 package com.cameronbarnes.mercury.core;
 
 import com.cameronbarnes.mercury.excel.ExcelExporter;
-import com.cameronbarnes.mercury.gui.MainFrame;
 import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.BinRegistry;
+import com.cameronbarnes.mercury.stock.PartSearchIndex;
 
-import javax.swing.*;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Everything about the count that's going on, the bins, the stage it's at, and the options. None of this is thread safe, a session has to be used from a single thread,
+ * the event dispatch thread in the app or the main thread in batch mode. Anything working in the background, like the IngestWorker or the AutoSave, hands its results over to that thread instead of calling into the session itself
+ */
 public final class Session {
 
-	private final MainFrame mMainFrame;
-	private ArrayList<Bin> mBins = new ArrayList<>();
+	private BinRegistry mBins = new BinRegistry();
 	private int mCurrentBin = -1;
 	private final Options mOptions;
 	private final Ingest mIngest;
+	private final AutoSave mAutoSave; // Null if this session isn't being autosaved
+	private final CopyOnWriteArrayList<SessionListener> mListeners = new CopyOnWriteArrayList<>();
+	private SessionListener.State mState = SessionListener.State.MAIN_MENU;
 	
-	public Session(MainFrame frame, Options options) {
-		mMainFrame = frame;
-		// For debug purposes only
-		if (Main.DEBUG) {
-			mMainFrame.setDebugDataAction(this);
-		}
+	/**
+	 * A session that isn't autosaved, for batch mode and the tests, which shouldn't be writing into the saved sessions folder
+	 * @param options the options for the session
+	 */
+	public Session(Options options) {
+		this(options, null);
+	}
+	
+	/**
+	 * The session doesn't know anything about the UI, anything showing it should add itself as a listener
+	 * @param options the options for the session
+	 * @param autoSave saves the session's progress as it goes, whoever made it is in charge of starting it, or null to not autosave
+	 */
+	public Session(Options options, AutoSave autoSave) {
 		mOptions = options;
 		mIngest = new Ingest(this);
+		mAutoSave = autoSave;
+		trackAutoSave();
+	}
+	
+	private void trackAutoSave() {
+		if (mAutoSave != null)
+			mAutoSave.track(mBins);
 	}
 	
 	/**
-	 * Changes the state and instructs the window frame to display the main menu for the application
+	 * @param listener gets told when the session changes stage or its bins change
+	 */
+	public void addSessionListener(SessionListener listener) {
+		mListeners.add(listener);
+	}
+	
+	public void removeSessionListener(SessionListener listener) {
+		mListeners.remove(listener);
+	}
+	
+	/**
+	 * @return the stage the session is in
+	 */
+	public SessionListener.State getState() {
+		return mState;
+	}
+	
+	private void setState(SessionListener.State state) {
+		mState = state;
+		for (SessionListener listener: mListeners) {
+			listener.stateChanged(this, state);
+		}
+	}
+	
+	private void fireBinsChanged() {
+		for (SessionListener listener: mListeners) {
+			listener.binsChanged(this);
+		}
+	}
+	
+	/**
+	 * Changes the state to the main menu
 	 */
 	public void mainMenu() {
-		SwingUtilities.invokeLater(() -> mMainFrame.mainMenu(this));
+		setState(SessionListener.State.MAIN_MENU);
 	}
 	
 	/**
 	 * Triggers the beginning of the ingest process, loading files from the ingest folder and then sorting the results
-	 * Then it changes the state and instructs the window frame to display to the Ingest menu form
+	 * Then it changes the state to ingest
 	 */
 	public void ingest() {
-		mIngest.ingest(false);
-		mBins.sort(Comparator.comparing(Bin::getBinNum));
-		SwingUtilities.invokeLater(() -> mMainFrame.ingest(this));
+		mIngest.ingest(false); // This replaces the bin registry, which lets the listeners know the bins changed
+		setState(SessionListener.State.INGEST);
 	}
 	
 	/**
 	 * Starts or updates the Ingest process by importing files from the provided directory
-	 * Changes the state and displayed menu form to be the Ingest menu if it isn't already
+	 * Changes the state to ingest if it isn't already
 	 * @param dir The directory to import stockstatus.xlsx files from
 	 */
 	public void addIngest(File dir) {
 		mIngest.ingest(true, dir);
-		mBins.sort(Comparator.comparing(Bin::getBinNum));
-		SwingUtilities.invokeLater(() -> mMainFrame.ingest(this));
+		fireBinsChanged();
+		setState(SessionListener.State.INGEST);
 	}
 	
 	/**
 	 * Starts or updates the Ingest process by importing files from the provided list
-	 * Changes the state and displayed menu form to be the Ingest menu if it isn't already
+	 * Changes the state to ingest if it isn't already
 	 * @param files a list of files to import bins from, these files will be moved
 	 */
 	public void addIngest(List<File> files) {
 		
 		mIngest.ingest(true, files);
-		mBins.sort(Comparator.comparing(Bin::getBinNum));
-		SwingUtilities.invokeLater(() -> mMainFrame.ingest(this));
+		fireBinsChanged();
+		setState(SessionListener.State.INGEST);
 		
 	}
 	
 	/**
-	 * Changes the window to display the main count page
+	 * Lets the listeners know an IngestWorker has finished adding bins to the session, it adds them straight to the bin registry as it goes.
+	 * The worker is only ever started from the ingest page, so unlike addIngest this doesn't change the state
+	 */
+	public void binsIngested() {
+		fireBinsChanged();
+	}
+	
+	/**
+	 * Changes the state to the main count
 	 */
 	public void count() {
-		SwingUtilities.invokeLater(() -> mMainFrame.count(this));
+		setState(SessionListener.State.COUNT);
 	}
 	
 	/**
-	 * Changes the window to display the resume progress menu
+	 * Changes the state to resuming a saved count
 	 */
 	public void resume() {
-		SwingUtilities.invokeLater(() -> mMainFrame.resume(this));
+		setState(SessionListener.State.RESUME);
 	}
 	
 	/**
-	 * Exports the bins and parts to the final output spreadsheet at the provided file then changes the window to the main menu
+	 * Exports the bins and parts to the final output spreadsheet at the provided file then changes the state to the main menu
 	 * Does nothing if the export fails, the export function should handle notifying the user about the error
 	 * @param fileOut The file to write the results to, should not exist already
+	 * @return true if the count was exported
 	 */
-	public void done(File fileOut) { // TODO handle asking the user if they want to overwrite an existing file, probably handle it where this function is getting called and not actually here
-		if (ExcelExporter.exportCycleCount(mBins, fileOut)) {
-			mBins = new ArrayList<>();
-			SwingUtilities.invokeLater(() -> mMainFrame.mainMenu(this));
+	public boolean done(File fileOut) { // TODO handle asking the user if they want to overwrite an existing file, probably handle it where this function is getting called and not actually here
+		if (ExcelExporter.exportCycleCount(mBins.getOrderedBins(), fileOut)) {
+			// The count is finished, so there's nothing left to resume
+			discardAutoSave();
+			mBins = new BinRegistry();
+			trackAutoSave();
+			fireBinsChanged();
+			setState(SessionListener.State.MAIN_MENU);
+			return true;
 		}
+		return false;
 	}
 	
 	public IUnprotectedOptions getUnprotectedOptions() {
 		return mOptions;
 	}
 	
+	/**
+	 * Replaces the bins in the session, if the list has more than one bin with the same bin number only the newest is kept
+	 * @param bins the new bins for the session
+	 */
 	public void setBins(ArrayList<Bin> bins) {
-		mBins = bins;
+		mBins = new BinRegistry(bins, false);
+		trackAutoSave();
+		fireBinsChanged();
+	}
+	
+	/**
+	 * @return a read only view of the bins in the session in order of bin number, bins have to be added through the session or the registry
+	 */
+	public List<Bin> getBins() {
+		return mBins.getOrderedBins();
 	}
 	
-	public ArrayList<Bin> getBins() {
+	/**
+	 * @param binNum a bin number, case doesn't matter
+	 * @return the index of the bin with that bin number in getBins(), or -1 if there isn't one
+	 */
+	public int getBinIndex(String binNum) {
+		return mBins.indexOfBinNumber(binNum);
+	}
+	
+	/**
+	 * @return a search index over every part in every bin in the session
+	 */
+	public PartSearchIndex getPartSearchIndex() {
+		return mBins.getSearchIndex();
+	}
+	
+	public void setBinRegistry(BinRegistry registry) {
+		mBins = registry;
+		trackAutoSave();
+		fireBinsChanged();
+	}
+	
+	/**
+	 * Deletes the autosave for this session, for when the progress has been saved properly or the user has chosen not to keep it
+	 */
+	public void discardAutoSave() {
+		if (mAutoSave != null)
+			mAutoSave.discard();
+	}
+	
+	public BinRegistry getBinRegistry() {
 		return mBins;
 	}
 	
+	/**
+	 * Adds a bin to the session, replacing any bin already present with the same bin number
+	 * @param bin the bin to add
+	 */
+	public void addBin(Bin bin) {
+		mBins.put(bin);
+		fireBinsChanged();
+	}
+	
 	/**
 	 * Sets the current bin value.
 	 * Session validate and keeps track of this value here as it's easily accessible by a lot of parts that need to get at it and can be easily validated without too much hassle
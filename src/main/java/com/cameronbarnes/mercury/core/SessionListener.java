@@ -0,0 +1,52 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+/**
+ * Gets told when a session moves between stages or its bins change, this is how the UI keeps up with the session without the session knowing anything about the UI.
+ * A session is only ever used from one thread, so events are sent on that thread. In the app that's the event dispatch thread, apart from Main setting the session up
+ * on the main thread at startup, so a listener that touches Swing should still get itself onto the event dispatch thread. In batch mode it's the main thread and there's no Swing at all
+ */
+public interface SessionListener {
+	
+	/**
+	 * The stages a session goes through, each of these has its own screen in the UI
+	 */
+	enum State {
+		MAIN_MENU,
+		INGEST,
+		COUNT,
+		RESUME
+	}
+	
+	/**
+	 * Called when the session moves to a stage, this is also called when the session is told to go to the stage it's already in, like when more files are ingested
+	 * @param session the session that changed
+	 * @param state the stage it's now in
+	 */
+	default void stateChanged(Session session, State state) {
+	}
+	
+	/**
+	 * Called after bins have been added to, replaced in, or removed from the session
+	 * @param session the session that changed
+	 */
+	default void binsChanged(Session session) {
+	}
+	
+}
@@ -0,0 +1,52 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+
+import java.util.List;
+
+/**
+ * A small summary of a saved session that's written next to the snapshot, so the resume screen can list sessions without loading every part of every bin
+ * @param savedAt when the session was saved, in milliseconds since the epoch
+ * @param numStockStatusFiles the number of stockstatus files saved with the session
+ * @param bins a summary of each bin in the session, in the order they were saved
+ */
+public record SessionManifest(long savedAt, int numStockStatusFiles, List<BinSummary> bins) {
+	
+	public static final String FILE_NAME = "manifest.json";
+	
+	/**
+	 * @param binNum the bin number
+	 * @param warehouse the warehouse the bin is in
+	 * @param numParts the number of parts in the bin
+	 */
+	public record BinSummary(String binNum, String warehouse, int numParts) {
+	}
+	
+	public static SessionManifest of(List<Bin> bins, int numStockStatusFiles) {
+		return new SessionManifest(System.currentTimeMillis(), numStockStatusFiles,
+				bins.stream().map(bin -> new BinSummary(bin.getBinNum(), bin.getWarehouse(), bin.getParts().size())).toList());
+	}
+	
+	public int numParts() {
+		return bins.stream().mapToInt(BinSummary::numParts).sum();
+	}
+	
+}
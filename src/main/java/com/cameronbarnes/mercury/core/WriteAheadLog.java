@@ -0,0 +1,326 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Part;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of the edits made to parts during a count, so that a crash loses at most the last fraction of a second of work.
+ * Edits are written in batches, one write and one fsync per batch, no matter how many edits are in it. Each record is a small binary blob:
+ * its length, the bin, warehouse and part number, which property changed, the old and new values, and a CRC32 so a record that was only half written when we crashed can be spotted and ignored
+ */
+public final class WriteAheadLog implements Closeable {
+	
+	public static final String FILE_NAME = "wal";
+	
+	private static final int MAGIC = 0x4D57414C; // MWAL
+	private static final byte VERSION = 1;
+	private static final int HEADER_LENGTH = 5;
+	
+	// Value tags
+	private static final byte NULL = 0;
+	private static final byte INT = 1;
+	private static final byte STRING = 2;
+	
+	private final FileChannel mChannel;
+	
+	/**
+	 * A single edit to a part
+	 * @param bin the bin number of the part
+	 * @param warehouse the warehouse of the part
+	 * @param part the part number
+	 * @param property which value was changed
+	 * @param oldValue the value before the edit, an Integer, a String or null
+	 * @param newValue the value after the edit, an Integer, a String or null
+	 */
+	public record Entry(String bin, String warehouse, String part, Part.PartProperty property, Object oldValue, Object newValue) {
+		
+		/**
+		 * Puts the new value back on the part
+		 * @param target the part this entry is for
+		 */
+		public void apply(Part target) {
+			
+			int physical = target.getPhysicalQuantity();
+			int counted = target.getCountedQuantity();
+			int adjustment = target.getAdjustment();
+			String comments = target.getComments();
+			
+			switch (property) {
+				case PHYSICAL_QUANTITY -> physical = (Integer) newValue;
+				case COUNTED_QUANTITY -> counted = (Integer) newValue;
+				case ADJUSTMENT -> adjustment = (Integer) newValue;
+				case COMMENTS -> comments = (String) newValue;
+				default -> { // Nothing else can be changed by the user, so nothing else should ever be in the log
+					return;
+				}
+			}
+			
+			target.restore(physical, counted, adjustment, comments);
+			
+		}
+		
+	}
+	
+	/**
+	 * Opens the log at the provided file for appending, creating it if it doesn't exist yet. If the end of the log is a record that was cut short it's cut off, so new records don't end up after it where they couldn't be read
+	 * @param file the log file
+	 * @throws IOException if the file can't be opened
+	 */
+	public WriteAheadLog(File file) throws IOException {
+		
+		long end = file.exists() ? scan(file, new ArrayList<>()) : -1;
+		mChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (end < HEADER_LENGTH) {
+			reset();
+		} else {
+			mChannel.truncate(end);
+			mChannel.position(end);
+		}
+		
+	}
+	
+	/**
+	 * Writes all the entries to the end of the log, and doesn't return until they're actually on disk
+	 * @param entries the entries to write, in the order they happened
+	 * @throws IOException if the log can't be written to
+	 */
+	public void append(List<Entry> entries) throws IOException {
+		
+		if (entries.isEmpty())
+			return;
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+		DataOutputStream recordOut = new DataOutputStream(record);
+		CRC32 crc = new CRC32();
+		
+		for (Entry entry: entries) {
+			
+			record.reset();
+			writeString(recordOut, entry.bin());
+			writeString(recordOut, entry.warehouse());
+			writeString(recordOut, entry.part());
+			recordOut.writeByte(propertyCode(entry.property()));
+			writeValue(recordOut, entry.oldValue());
+			writeValue(recordOut, entry.newValue());
+			
+			crc.reset();
+			crc.update(record.toByteArray());
+			
+			out.writeInt(record.size());
+			record.writeTo(out);
+			out.writeInt((int) crc.getValue());
+			
+		}
+		
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		while (buffer.hasRemaining()) {
+			mChannel.write(buffer);
+		}
+		mChannel.force(false);
+		
+	}
+	
+	/**
+	 * Empties the log, this is done after everything in it has been written to a snapshot
+	 * @throws IOException if the log can't be written to
+	 */
+	public void reset() throws IOException {
+		
+		mChannel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).put(VERSION).flip();
+		mChannel.write(header, 0);
+		mChannel.position(HEADER_LENGTH);
+		mChannel.force(true);
+		
+	}
+	
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+	
+	/**
+	 * Reads all the complete entries from a log file. Reading stops at the first record that's cut short or doesn't match its checksum, since that's where the last write was interrupted
+	 * @param file the log file
+	 * @return the entries in the order they were written, empty if the file doesn't exist or isn't a log
+	 * @throws IOException if the file can't be read
+	 */
+	public static List<Entry> read(File file) throws IOException {
+		
+		ArrayList<Entry> entries = new ArrayList<>();
+		if (file.exists()) {
+			scan(file, entries);
+		}
+		return entries;
+		
+	}
+	
+	/**
+	 * Reads the complete entries from a log file
+	 * @param file the log file
+	 * @param entries receives the entries in the order they were written
+	 * @return the position just after the last complete record, or -1 if the file doesn't even have a valid header
+	 * @throws IOException if the file can't be read
+	 */
+	private static long scan(File file, List<Entry> entries) throws IOException {
+		
+		long end = -1;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			
+			if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+				System.out.println("Debug: " + file + " isn't a write ahead log we know how to read");
+				return end;
+			}
+			end = HEADER_LENGTH;
+			
+			CRC32 crc = new CRC32();
+			while (true) {
+				
+				byte[] record;
+				int checksum;
+				try {
+					int length = in.readInt();
+					if (length < 0 || length > 1 << 20) // Nothing we write is anywhere near this big, so this is a torn or corrupt record
+						break;
+					record = in.readNBytes(length);
+					if (record.length != length)
+						break;
+					checksum = in.readInt();
+				}
+				catch (EOFException e) {
+					break;
+				}
+				
+				crc.reset();
+				crc.update(record);
+				if ((int) crc.getValue() != checksum)
+					break;
+				
+				DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+				String bin = readString(recordIn);
+				String warehouse = readString(recordIn);
+				String part = readString(recordIn);
+				Part.PartProperty property = propertyForCode(recordIn.readUnsignedByte());
+				entries.add(new Entry(bin, warehouse, part, property, readValue(recordIn), readValue(recordIn)));
+				end += Integer.BYTES + record.length + Integer.BYTES;
+				
+			}
+			
+		}
+		catch (EOFException e) {
+			// The header itself was cut short, so there's nothing in here
+		}
+		
+		return end;
+		
+	}
+	
+	/**
+	 * The code a property is written to the log as. These are fixed, reordering or adding to PartProperty mustn't change what's already in an old log, so a new property has to be given a new code here
+	 * @param property the property
+	 * @return its code in the log
+	 */
+	private static int propertyCode(Part.PartProperty property) {
+		
+		return switch (property) {
+			case PART_NUMBER -> 0;
+			case PART_DESCRIPTION -> 1;
+			case WAREHOUSE -> 2;
+			case BIN -> 3;
+			case PHYSICAL_QUANTITY -> 4;
+			case ALLOCATED_QUANTITY -> 5;
+			case FREE_QUANTITY -> 6;
+			case COUNTED_QUANTITY -> 7;
+			case COST -> 8;
+			case ADJUSTMENT -> 9;
+			case COMMENTS -> 10;
+		};
+		
+	}
+	
+	/**
+	 * @param code a property code read from the log
+	 * @return the property with that code
+	 * @throws IOException if no property has that code, the record passed its checksum so this isn't a torn write, it's a log from a version we don't understand
+	 */
+	private static Part.PartProperty propertyForCode(int code) throws IOException {
+		
+		return switch (code) {
+			case 0 -> Part.PartProperty.PART_NUMBER;
+			case 1 -> Part.PartProperty.PART_DESCRIPTION;
+			case 2 -> Part.PartProperty.WAREHOUSE;
+			case 3 -> Part.PartProperty.BIN;
+			case 4 -> Part.PartProperty.PHYSICAL_QUANTITY;
+			case 5 -> Part.PartProperty.ALLOCATED_QUANTITY;
+			case 6 -> Part.PartProperty.FREE_QUANTITY;
+			case 7 -> Part.PartProperty.COUNTED_QUANTITY;
+			case 8 -> Part.PartProperty.COST;
+			case 9 -> Part.PartProperty.ADJUSTMENT;
+			case 10 -> Part.PartProperty.COMMENTS;
+			default -> throw new IOException("Unknown part property code " + code + " in the write ahead log");
+		};
+		
+	}
+	
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+	}
+	
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		
+		if (value instanceof Integer i) {
+			out.writeByte(INT);
+			out.writeInt(i);
+		} else if (value instanceof String s) {
+			out.writeByte(STRING);
+			writeString(out, s);
+		} else {
+			out.writeByte(NULL);
+		}
+		
+	}
+	
+	private static Object readValue(DataInputStream in) throws IOException {
+		
+		return switch (in.readByte()) {
+			case INT -> in.readInt();
+			case STRING -> readString(in);
+			default -> null;
+		};
+		
+	}
+	
+}
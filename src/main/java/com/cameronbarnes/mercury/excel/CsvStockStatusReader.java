@@ -0,0 +1,173 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads stockstatus files that have been exported as csv, with the same 14 columns as the workbooks. The title row is skipped because its PhysicalQty column isn't a number
+ */
+final class CsvStockStatusReader implements StockStatusReader {
+	
+	private static final int NUM_CELLS = 14;
+	
+	/**
+	 * There's no signature for a csv file, so we're going with plain text (optionally with a UTF-8 byte order mark) that has a comma before the end of the first line
+	 */
+	@Override
+	public boolean canRead(byte[] header, int length) {
+		
+		int start = StockStatusReaders.startsWith(header, length, 0xEF, 0xBB, 0xBF) ? 3 : 0;
+		
+		for (int i = start; i < length; i++) {
+			int b = header[i] & 0xFF;
+			if (b == ',')
+				return true;
+			if (b == '\n' || b == '\r')
+				return false;
+			if (b < 0x20 && b != '\t') // Binary files and UTF-16 text will have control characters or zeros in here somewhere
+				return false;
+		}
+		return false;
+		
+	}
+	
+	@Override
+	public List<Part> readParts(File file) throws IOException {
+		
+		ArrayList<Part> parts = new ArrayList<>();
+		String[] cells = new String[NUM_CELLS];
+		
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			
+			String line;
+			StringBuilder record = new StringBuilder();
+			while ((line = reader.readLine()) != null) {
+				
+				record.append(line);
+				// A quoted cell can have a line break in it, in which case the record carries on to the next line
+				if (!hasBalancedQuotes(record)) {
+					record.append('\n');
+					continue;
+				}
+				
+				if (splitRecord(record, cells) == NUM_CELLS) {
+					getPart(cells).ifPresent(parts::add);
+				}
+				record.setLength(0);
+				
+			}
+			
+		}
+		
+		return parts;
+		
+	}
+	
+	private static boolean hasBalancedQuotes(CharSequence record) {
+		
+		boolean quoted = false;
+		for (int i = 0; i < record.length(); i++) {
+			if (record.charAt(i) == '"')
+				quoted = !quoted;
+		}
+		return !quoted;
+		
+	}
+	
+	/**
+	 * Splits a csv record into its cells, quotes are removed and doubled quotes inside a quoted cell are turned back into a single quote
+	 * @param record the record to split
+	 * @param cells receives the first 14 cells
+	 * @return how many cells were in the record, which can be more than were stored
+	 */
+	private static int splitRecord(CharSequence record, String[] cells) {
+		
+		int count = 0;
+		StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		
+		for (int i = 0; i < record.length(); i++) {
+			char c = record.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+						cell.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					cell.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				if (count < cells.length) {
+					cells[count] = cell.toString();
+				}
+				count++;
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		
+		if (count < cells.length) {
+			cells[count] = cell.toString();
+		}
+		return count + 1;
+		
+	}
+	
+	/**
+	 * Builds a part out of the 14 cells of a record
+	 * @param cells the text of each cell
+	 * @return an Optional with the part, or an empty Optional if any of the number cells can't be read, which includes the title row
+	 */
+	private static Optional<Part> getPart(String[] cells) {
+		
+		try {
+			return Optional.of(new Part(
+					cells[0].strip(), // PartNumber
+					cells[1].strip(), // PartDescription
+					cells[2].strip(), // WareHouse
+					cells[3].strip(), // Bin
+					(int) Double.parseDouble(cells[4].strip()), // PhysicalQty
+					(int) Double.parseDouble(cells[5].strip()), // AllocatedQty
+					(int) Double.parseDouble(cells[6].strip()), // FreeQty
+					Double.parseDouble(cells[7].strip()) // Cost
+			));
+		}
+		catch (NumberFormatException e) {
+			System.out.println("Debug: Expected a number in one of the quantity or cost cells of the row");
+			return Optional.empty();
+		}
+		
+	}
+	
+}
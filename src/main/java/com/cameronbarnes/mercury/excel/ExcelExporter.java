@@ -22,42 +22,81 @@ import com.cameronbarnes.mercury.stock.Part;
 import com.cameronbarnes.mercury.util.HomeAPIUtils;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.List;
-import java.util.OptionalInt;
 
 public final class ExcelExporter {
 	
 	/**
-	 * Exports the count to an output Excel file
+	 * How many rows the streaming export keeps in memory per sheet before flushing them to a temp file
+	 */
+	public static final int DEFAULT_ROW_WINDOW = 100;
+	
+	/**
+	 * Once a count gets to more rows than this in total, exportCycleCount switches over to the streaming export
+	 */
+	public static final int STREAMING_ROW_THRESHOLD = 20000;
+	
+	/**
+	 * Exports the count to an output Excel file, large counts are written with the streaming export so they don't have to fit in memory all at once
 	 * @param bins the bins to export
 	 * @param out the file to write to
 	 * @return if the operation was successful
 	 */
 	public static boolean exportCycleCount(List<Bin> bins, File out) {
 		
+		if (bins != null && countRows(bins) > STREAMING_ROW_THRESHOLD)
+			return exportCycleCountStreaming(bins, out, DEFAULT_ROW_WINDOW, true);
+		
 		if (bins == null || bins.isEmpty() || bins.stream().allMatch(Bin::isEmpty))
 			return false;
 		
 		try (Workbook workbook = new XSSFWorkbook()) {
+			writeCycleCount(workbook, bins, out);
+		} catch (Exception e) {
+			// If this throws an exception I as a developer probably want to know about it, so I'm going to prompt the user to send the information to me
+			HomeAPIUtils.handleExcelExporterError(e, out, bins);
+			return false;
+		}
 		
-			for (Bin bin: bins) {
-				Sheet sheet = workbook.createSheet(bin.getBinNum());
-				exportBinToSheet(sheet, bin);
-			}
-			
-			try (FileOutputStream outputStream = new FileOutputStream(out)) {
-				workbook.write(outputStream);
-			}
+		return true;
+		
+	}
+	
+	/**
+	 * Exports the count to an output Excel file with SXSSF, only the last rowWindow rows of each sheet are kept in memory and the rest are flushed to temp files as we go.
+	 * The output is laid out exactly the same as exportCycleCount
+	 * @param bins the bins to export
+	 * @param out the file to write to
+	 * @param rowWindow how many rows of each sheet to keep in memory
+	 * @param compressTempFiles true to gzip the temp files, which uses less disk at the cost of some speed
+	 * @return if the operation was successful
+	 */
+	public static boolean exportCycleCountStreaming(List<Bin> bins, File out, int rowWindow, boolean compressTempFiles) {
 		
+		if (bins == null || bins.isEmpty() || bins.stream().allMatch(Bin::isEmpty))
+			return false;
+		
+		SXSSFWorkbook workbook = new SXSSFWorkbook(null, rowWindow, compressTempFiles);
+		try {
+			writeCycleCount(workbook, bins, out);
 		} catch (Exception e) {
 			// If this throws an exception I as a developer probably want to know about it, so I'm going to prompt the user to send the information to me
 			HomeAPIUtils.handleExcelExporterError(e, out, bins);
 			return false;
+		} finally {
+			// The temp files stick around until we get rid of them ourselves
+			workbook.dispose();
+			try {
+				workbook.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		
 		return true;
@@ -65,30 +104,156 @@ public final class ExcelExporter {
 	}
 	
 	/**
-	 * Each bin in the output spreadsheet should be on its own sheet, this function fills the sheet for that bin with the relevant data
-	 * @param sheet the sheet to write to
-	 * @param bin the bin to output to the sheet
+	 * Fills the workbook with a sheet for each bin, and then writes it out
 	 */
-	private static void exportBinToSheet(Sheet sheet, Bin bin) {
+	private static void writeCycleCount(Workbook workbook, List<Bin> bins, File out) throws IOException {
 		
-		OptionalInt longestPartDescription = bin.getParts().stream().map(Part::getPartDescription).mapToInt(String::length).max(); // Get the length of the longest part description in this bin
-		int partDescriptionCharWidth; // This is the default value, though I doubt it'll ever get used at this point
-		if (longestPartDescription.isEmpty() || longestPartDescription.getAsInt() <  15) {
-			partDescriptionCharWidth = 18;
-		} else {
-			partDescriptionCharWidth = longestPartDescription.getAsInt() + 5;
+		exportBinsToWorkbook(workbook, bins);
+		
+		try (FileOutputStream outputStream = new FileOutputStream(out)) {
+			workbook.write(outputStream);
+		}
+		
+	}
+	
+	/**
+	 * Adds a sheet for each bin to the workbook, all the sheets share the same few cell styles
+	 * @param workbook the workbook to fill
+	 * @param bins the bins to export
+	 */
+	static void exportBinsToWorkbook(Workbook workbook, List<Bin> bins) {
+		
+		ExportStyles styles = new ExportStyles(workbook);
+		for (Bin bin: bins) {
+			Sheet sheet = workbook.createSheet(bin.getBinNum());
+			exportBinToSheet(sheet, bin, styles);
 		}
 		
-		boolean hasComments = bin.getParts().stream().anyMatch(Part::hasComments);
-		OptionalInt longestComment = bin.getParts().stream().map(Part::getComments).mapToInt(String::length).max();
-		int partCommentsWidth = 0;
-		if (longestComment.isPresent()) {
-			partCommentsWidth = longestComment.getAsInt() + 5;
+	}
+	
+	/**
+	 * @return how many rows the export will have across all the sheets, including the header rows
+	 */
+	private static int countRows(List<Bin> bins) {
+		
+		int rows = 0;
+		for (Bin bin: bins) {
+			rows += bin.getParts().size() + 1;
 		}
+		return rows;
+		
+	}
+	
+	/**
+	 * The column widths for a bin's sheet. These come from the longest description and comment in the bin, so they're worked out in one pass over the parts
+	 * before we start writing rows, since the streaming export can't go back and look at rows it has already flushed
+	 * @param partDescriptionCharWidth the width of the description column in characters
+	 * @param partCommentsWidth the width of the comments column in characters
+	 * @param hasComments if any part in the bin has a comment, in which case we need the comments column
+	 */
+	private record BinLayout(int partDescriptionCharWidth, int partCommentsWidth, boolean hasComments) {
+		
+		static BinLayout of(Bin bin) {
+			
+			int longestPartDescription = -1;
+			int longestComment = -1;
+			boolean hasComments = false;
+			for (Part part: bin.getParts()) {
+				longestPartDescription = Math.max(longestPartDescription, part.getPartDescription().length());
+				longestComment = Math.max(longestComment, part.getComments().length());
+				hasComments |= part.hasComments();
+			}
+			
+			int partDescriptionCharWidth; // This is the default value, though I doubt it'll ever get used at this point
+			if (longestPartDescription < 15) {
+				partDescriptionCharWidth = 18;
+			} else {
+				partDescriptionCharWidth = longestPartDescription + 5;
+			}
+			
+			int partCommentsWidth = 0;
+			if (longestComment >= 0) {
+				partCommentsWidth = longestComment + 5;
+			}
+			
+			return new BinLayout(partDescriptionCharWidth, partCommentsWidth, hasComments);
+			
+		}
+		
+	}
+	
+	/**
+	 * The cell styles and fonts used in the export. Excel only allows so many styles in a workbook, and every one of them is written to the file,
+	 * so we create each style once per workbook and share it between all the sheets instead of making new ones for every bin and part
+	 */
+	private static final class ExportStyles {
+		
+		private final Workbook mWorkbook;
+		private final CellStyle mHeaderStyle;
+		private final CellStyle mBodyStyle;
+		private CellStyle mNoStockStyle; // Most counts don't have an empty bin in them, so we'll only make this one if we need it
+		
+		ExportStyles(Workbook workbook) {
+			
+			mWorkbook = workbook;
+			
+			mBodyStyle = createBorderedStyle(workbook);
+			
+			mHeaderStyle = createBorderedStyle(workbook);
+			Font font = workbook.createFont();
+			font.setBold(true);
+			mHeaderStyle.setFont(font);
+			
+		}
+		
+		CellStyle getHeaderStyle() {
+			return mHeaderStyle;
+		}
+		
+		CellStyle getBodyStyle() {
+			return mBodyStyle;
+		}
+		
+		CellStyle getNoStockStyle() {
+			
+			if (mNoStockStyle == null) {
+				mNoStockStyle = createBorderedStyle(mWorkbook);
+				Font bigFont = mWorkbook.createFont();
+				bigFont.setBold(true);
+				bigFont.setFontHeightInPoints((short) 36);
+				mNoStockStyle.setFont(bigFont);
+			}
+			return mNoStockStyle;
+			
+		}
+		
+		private static CellStyle createBorderedStyle(Workbook workbook) {
+			
+			CellStyle style = workbook.createCellStyle();
+			style.setBorderBottom(BorderStyle.THIN);
+			style.setBorderLeft(BorderStyle.THIN);
+			style.setBorderRight(BorderStyle.THIN);
+			style.setBorderTop(BorderStyle.THIN);
+			return style;
+			
+		}
+		
+	}
+	
+	/**
+	 * Each bin in the output spreadsheet should be on its own sheet, this function fills the sheet for that bin with the relevant data
+	 * @param sheet the sheet to write to
+	 * @param bin the bin to output to the sheet
+	 * @param styles the styles shared by every sheet in the workbook
+	 */
+	private static void exportBinToSheet(Sheet sheet, Bin bin, ExportStyles styles) {
+		
+		BinLayout layout = BinLayout.of(bin);
+		boolean hasComments = layout.hasComments();
 		
 		// Set up the sheet
 		sheet.setColumnWidth(0, 13 * 256); // PartNumber
-		sheet.setColumnWidth(1, partDescriptionCharWidth * 256); // PartDescription
+		sheet.setColumnWidth(1, layout.partDescriptionCharWidth() * 256); // PartDescription
 		sheet.setColumnWidth(2, 15 * 256); // WareHouse
 		sheet.setColumnWidth(3, 11 * 256); // Bin
 		sheet.setColumnWidth(4, 12 * 256); // PhysicalQty
@@ -96,19 +261,11 @@ public final class ExcelExporter {
 		sheet.setColumnWidth(6, 7 * 256);  // Cost
 		sheet.setColumnWidth(7, 12 * 256); // Adjustment
 		if (hasComments) {
-			sheet.setColumnWidth(8, partCommentsWidth * 256); // Part Comments
+			sheet.setColumnWidth(8, layout.partCommentsWidth() * 256); // Part Comments
 		}
 		
 		// Set up the header
-		CellStyle headerStyle = sheet.getWorkbook().createCellStyle();
-		headerStyle.setBorderBottom(BorderStyle.THIN);
-		headerStyle.setBorderLeft(BorderStyle.THIN);
-		headerStyle.setBorderRight(BorderStyle.THIN);
-		headerStyle.setBorderTop(BorderStyle.THIN);
-		
-		XSSFFont font = ((XSSFWorkbook) sheet.getWorkbook()).createFont();
-		font.setBold(true);
-		headerStyle.setFont(font);
+		CellStyle headerStyle = styles.getHeaderStyle();
 		
 		Row header = sheet.createRow(0);
 		
@@ -152,15 +309,7 @@ public final class ExcelExporter {
 		}
 		
 		if (bin.isEmpty()) { // We're going to display some custom data for this
-			CellStyle noStockStyle = sheet.getWorkbook().createCellStyle();
-			noStockStyle.setBorderBottom(BorderStyle.THIN);
-			noStockStyle.setBorderLeft(BorderStyle.THIN);
-			noStockStyle.setBorderRight(BorderStyle.THIN);
-			noStockStyle.setBorderTop(BorderStyle.THIN);
-			XSSFFont bigFont = ((XSSFWorkbook) sheet.getWorkbook()).createFont();
-			bigFont.setBold(true);
-			bigFont.setFontHeightInPoints((short) 36);
-			noStockStyle.setFont(bigFont);
+			CellStyle noStockStyle = styles.getNoStockStyle();
 			
 			Row row = sheet.createRow(7);
 			Cell cell = row.createCell(0 , CellType.STRING);
@@ -173,7 +322,7 @@ public final class ExcelExporter {
 			for (int i = 0; i < bin.getParts().size(); i++) {
 				
 				Row row = sheet.createRow(i + 1);
-				exportPartToRow(row, bin.getParts().get(i), hasComments);
+				exportPartToRow(row, bin.getParts().get(i), hasComments, styles.getBodyStyle());
 				
 			}
 		}
@@ -185,14 +334,9 @@ public final class ExcelExporter {
 	 * @param row the row to output data to
 	 * @param part the part to output data from
 	 * @param comment if any part in this bin has a comment, as if it does the comment column needs to have a border drawn for the cell even if it's empty
+	 * @param style the bordered style every cell in a part row uses
 	 */
-	private static void exportPartToRow(Row row, Part part, boolean comment) {
-		
-		CellStyle style = row.getSheet().getWorkbook().createCellStyle();
-		style.setBorderBottom(BorderStyle.THIN);
-		style.setBorderLeft(BorderStyle.THIN);
-		style.setBorderRight(BorderStyle.THIN);
-		style.setBorderTop(BorderStyle.THIN);
+	private static void exportPartToRow(Row row, Part part, boolean comment, CellStyle style) {
 		
 		Cell h0 = row.createCell(0, CellType.STRING);
 		h0.setCellValue(part.getPartNumber());
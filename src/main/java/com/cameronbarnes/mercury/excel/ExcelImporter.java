@@ -17,39 +17,66 @@
 
 package com.cameronbarnes.mercury.excel;
 
+import com.cameronbarnes.mercury.core.ScanClassifier;
 import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
-import org.apache.commons.io.input.BOMInputStream;
-import org.apache.poi.EmptyFileException;
-import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JRuntimeException;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.util.RecordFormatException;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipException;
 
 public final class ExcelImporter {
 	
-	// The regex pattern required to parse a part from the html version of the spreadsheet
-	private static final Pattern PATTERN = Pattern.compile("<td>(.+?)</td>");
-	
 	/**
-	 * Imports a bin from a stockstatus file, either from an actual Excel workbook, or a html document pretending to be one
+	 * Imports a bin from a stockstatus file, either from an actual Excel workbook, a csv file, or a html document pretending to be one
+	 * Real .xlsx workbooks are read with the streaming importer, with the DOM importer as a fallback if that fails
+	 * The bin number is checked against the default bin number format
 	 * @param file The file to import from
 	 * @return an Optional Bin if the stockstatus file contains valid data
 	 */
 	public static Optional<Bin> importBinFromStockStatusFile(File file) {
+		return importBinFromStockStatusFile(file, true, ScanClassifier.DEFAULT);
+	}
+	
+	/**
+	 * Same as above, but the bin number is checked against the site's bin number format
+	 * @param file The file to import from
+	 * @param classifier the classifier built from the site's options
+	 * @return an Optional Bin if the stockstatus file contains valid data
+	 */
+	public static Optional<Bin> importBinFromStockStatusFile(File file, ScanClassifier classifier) {
+		return importBinFromStockStatusFile(file, true, classifier);
+	}
+	
+	/**
+	 * Imports a bin from a stockstatus file, either from an actual Excel workbook, a csv file, or a html document pretending to be one
+	 * @param file The file to import from
+	 * @param streaming true to read real .xlsx workbooks row by row with the POI event API, false to load the whole workbook into memory
+	 * @return an Optional Bin if the stockstatus file contains valid data
+	 */
+	public static Optional<Bin> importBinFromStockStatusFile(File file, boolean streaming) {
+		return importBinFromStockStatusFile(file, streaming, ScanClassifier.DEFAULT);
+	}
+	
+	/**
+	 * Imports a bin from a stockstatus file, either from an actual Excel workbook, a csv file, or a html document pretending to be one
+	 * @param file The file to import from
+	 * @param streaming true to read real .xlsx workbooks row by row with the POI event API, false to load the whole workbook into memory
+	 * @param classifier the bin number has to match this classifier's bin number format for the bin's warehouse
+	 * @return an Optional Bin if the stockstatus file contains valid data
+	 */
+	public static Optional<Bin> importBinFromStockStatusFile(File file, boolean streaming, ScanClassifier classifier) {
 		
 		if (!file.exists())
 			return Optional.empty();
@@ -64,105 +91,119 @@ public final class ExcelImporter {
 			time = null;
 		}
 		
-		try (FileInputStream fileInputStream = new FileInputStream(file)) {
-			
-			// This throws a NotOfficeXmlFileException if the file isn't actually an Excel file, which we are handling for
-			// Just catching the error if it happens probably isn't the best way to do this, it's definitely not especially clean, but it functions without issue in testing
-			Workbook workbook = new XSSFWorkbook(fileInputStream);
-			Sheet sheet = workbook.getSheetAt(0);
-			ArrayList<Part> parts = new ArrayList<>();
-			
-			for (Row row: sheet) {
-				getPartFromXSSFSheetRow(row).ifPresent(parts::add); //If the part is valid we'll add it to the part list
-			}
-			
-			//If there are no valid parts, we won't return this bin object
-			if (parts.isEmpty())
-				return Optional.empty();
-			
-			//All the parts in the bin will have the same Bin Number and Warehouse values, which are the other values we need for the bin object
-			return Optional.of(new Bin(parts.get(0).getBinNum(), parts.get(0).getWarehouse(), parts, time));
+		byte[] header = new byte[StockStatusReaders.HEADER_LENGTH];
+		int length;
+		try {
+			length = StockStatusReaders.readHeader(file, header);
+		} catch (IOException e) { //TODO handle this with the HomeAPI
+			e.printStackTrace();
+			return Optional.empty();
+		}
 		
-		} catch (EmptyFileException e) {
-			
+		if (length == 0) {
 			// If the file is actually empty then I'm just going to delete it
 			file.delete();
 			return Optional.empty();
-			
-		} catch (NotOfficeXmlFileException | ZipException e) {
-			/*
-			sneaky HTMobbitses
-			 So apparently CSS8 outputs an HTML file instead of a xls file, but still calls it a xls file, and Excel will read it as a xls file, but Apache POI will not
-			 So we're going to have to work some regex magic to make this data useful
-			 I should probably be checking for this rather than just catching it as an exception, but this seems to be the least messy way to do this
-			*/
-
-            ArrayList<Part> parts = new ArrayList<>();
-			
-			// The charset for this file is VERY weird, it took me hours to figure this out and this try with resources looks like crap, but it works
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new BOMInputStream(new FileInputStream(file), false), StandardCharsets.UTF_16LE))) {
-				
-				while (reader.ready()) {
-					
-					String line = reader.readLine();
-					
-					if (line.contains("<b>") || line.isEmpty())
-						continue;
-					
-					getPartFromHTM_XLS_String(line).ifPresent(parts::add);
-					
-				}
-				
-			}
-			catch (IOException ex) { //TODO decide if I want to handle this error with the HomeAPI
-				return Optional.empty();
-			}
-			
-			//If there are no valid parts, we won't return this bin object
-			if (parts.isEmpty())
-				return Optional.empty();
-			
-			//All the parts in the bin will have the same Bin Number and Warehouse values, which are the other values we need for the bin object
-			return Optional.of(new Bin(parts.get(0).getBinNum(), parts.get(0).getWarehouse(), parts, time));
-			
-		} catch (IOException e) { //TODO handle this with the HomeAPI
+		}
+		
+		// We pick the parser from the first few bytes of the file rather than the extension, since CSS8 likes to call html files xls files
+		Optional<StockStatusReader> reader = StockStatusReaders.find(header, length, streaming);
+		if (reader.isEmpty()) {
+			System.out.println("Debug: " + file.getName() + " isn't in any of the stockstatus formats we can read");
+			return Optional.empty();
+		}
+		
+		List<Part> parts;
+		try {
+			parts = reader.get().readParts(file);
+		} catch (IOException | IllegalArgumentException | IllegalStateException | RecordFormatException | POIXMLException | OpenXML4JRuntimeException e) { //TODO handle this with the HomeAPI
+			// POI throws runtime exceptions for files it recognises but can't read, like password protected workbooks (which are OLE2 files, same as .xls) and Excel 5 workbooks,
+			// those are just skipped like any other file we can't read
 			System.err.println("Debug: Exception in Excel Bin Importer. Exception text is as follows");
 			e.printStackTrace();
 			return Optional.empty();
 		}
 		
+		//If there are no valid parts, we won't return this bin object
+		if (parts.isEmpty())
+			return Optional.empty();
+		
+		//All the parts in the bin will have the same Bin Number and Warehouse values, which are the other values we need for the bin object
+		return Optional.of(new Bin(parts.get(0).getBinNum(), parts.get(0).getWarehouse(), parts, time, classifier));
+		
 	}
 	
 	/**
-	 * sneaky HTMobbitses, apparently CSS8 outputs an HTML file instead of a xls file, so this handles reading part data from that
-	 * @param line This takes each new line from the HTM file
-	 * @return Returns an Optional with a part object if valid, otherwise returns an empty optional
+	 * Reads all the valid parts from the first sheet of a workbook that's already been loaded into memory
+	 * @param workbook the workbook to read from
+	 * @return the valid parts, which may be empty
 	 */
-	private static Optional<Part> getPartFromHTM_XLS_String(String line) {
-		
-		Matcher matcher = PATTERN.matcher(line);
-		
-		ArrayList<MatchResult> results = new ArrayList<>();
-		matcher.results().forEach(results::add);
-		if (results.size() == 14) {
-		
-			Part part = new Part(
-					results.get(0).group(1), // PartNumber
-					results.get(1).group(1), // PartDescription
-					results.get(2).group(1), // WareHouse
-					results.get(3).group(1), // Bin
-					Integer.parseInt(results.get(4).group(1)), // PhysicalQty
-					Integer.parseInt(results.get(5).group(1)), // AllocatedQty
-					Integer.parseInt(results.get(6).group(1)), // FreeQty
-					Double.parseDouble(results.get(7).group(1)) // Cost
-					);
-			
-			return Optional.of(part);
+	static List<Part> getPartsFromWorkbook(Workbook workbook) {
+		
+		Sheet sheet = workbook.getSheetAt(0);
+		ArrayList<Part> parts = new ArrayList<>();
 		
+		for (Row row: sheet) {
+			getPartFromSheetRow(row).ifPresent(parts::add); //If the part is valid we'll add it to the part list
 		}
 		
-		return Optional.empty();
+		return parts;
+		
+	}
 	
+	/**
+	 * Reads a part object in from a row parsed by the streaming importer, this does the same validation as getPartFromSheetRow
+	 * @param physicalCells the number of cells actually present in the row
+	 * @param values the text of the first 14 cells, by column index
+	 * @param kinds the kind of value in each of the first 14 cells, by column index
+	 * @return an Optional containing a part if valid, otherwise an empty Optional
+	 */
+	static Optional<Part> getPartFromStreamedRow(int physicalCells, String[] values, StreamingStockStatusReader.CellKind[] kinds) {
+		
+		//First we'll validate the row as having the correct data types to be a part
+		if (physicalCells != 14) { //There should be 14 cells, from PartNumber to Last3MonthConsumed
+			System.out.println("Debug: We're expecting exactly 14 cells for a valid row, instead we read " + physicalCells);
+			return Optional.empty();
+		}
+		
+		if (kinds[4] != StreamingStockStatusReader.CellKind.NUMERIC) { //This cell should be for PhysicalQuantity, which is an integer, if this cell type is a String then we know it's the row at the very top with the titles
+			System.out.println("Debug: Cell type is not numeric where we expect the PhysicalQuantity value to be");
+			return Optional.empty();
+		}
+		
+		// The DOM importer would throw reading a number as text or text as a number, so those rows just aren't valid parts
+		for (int i = 0; i < 4; i++) {
+			if (kinds[i] != StreamingStockStatusReader.CellKind.STRING && kinds[i] != StreamingStockStatusReader.CellKind.BLANK)
+				return Optional.empty();
+		}
+		
+		double[] numbers = new double[4];
+		for (int i = 4; i < 8; i++) {
+			if (kinds[i] == StreamingStockStatusReader.CellKind.BLANK)
+				continue;
+			if (kinds[i] != StreamingStockStatusReader.CellKind.NUMERIC && kinds[i] != StreamingStockStatusReader.CellKind.FORMULA)
+				return Optional.empty();
+			try {
+				numbers[i - 4] = Double.parseDouble(values[i]);
+			}
+			catch (NumberFormatException e) {
+				return Optional.empty();
+			}
+		}
+		
+		Part part = new Part(
+				values[0],
+				values[1],
+				values[2],
+				values[3],
+				(int) numbers[0],
+				(int) numbers[1],
+				(int) numbers[2],
+				numbers[3]
+		);
+		
+		return Optional.of(part);
+		
 	}
 	
 	/**
@@ -170,7 +211,7 @@ public final class ExcelImporter {
 	 * @param row the row to read a part from
 	 * @return an Optional containing a part if valid, otherwise an empty Optional
 	 */
-	private static Optional<Part> getPartFromXSSFSheetRow(Row row) {
+	private static Optional<Part> getPartFromSheetRow(Row row) {
 		
 		//First we'll validate the row as having the correct data types to be a part
 		if (row.getPhysicalNumberOfCells() != 14) { //There should be 14 cells, from PartNumber to Last3MonthConsumed
@@ -0,0 +1,48 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads legacy BIFF .xls stockstatus files, the ones that are actually Excel 97 workbooks rather than html. These are OLE2 files, so we pick them out by that signature
+ */
+final class HssfStockStatusReader implements StockStatusReader {
+	
+	@Override
+	public boolean canRead(byte[] header, int length) {
+		return StockStatusReaders.startsWith(header, length, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1);
+	}
+	
+	@Override
+	public List<Part> readParts(File file) throws IOException {
+		
+		try (POIFSFileSystem fileSystem = new POIFSFileSystem(file, true); Workbook workbook = new HSSFWorkbook(fileSystem)) {
+			return ExcelImporter.getPartsFromWorkbook(workbook);
+		}
+		
+	}
+	
+}
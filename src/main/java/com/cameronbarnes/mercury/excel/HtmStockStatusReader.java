@@ -0,0 +1,228 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * sneaky HTMobbitses
+ * CSS8 outputs an HTML file instead of a xls file, but still calls it a xls file. This reads the parts out of that html with a small state machine
+ * over a char buffer, rather than running a regex over every line and collecting the matches.
+ * It mostly behaves the same as the old line based regex: every {@code <td>...</td>} cell on a line is collected, lines containing {@code <b>} are the title rows and are skipped,
+ * and a line with exactly 14 cells is a part. The one difference is on purpose, an empty {@code <td></td>} counts as a cell. The regex needed at least one character in a cell,
+ * so an empty one ran into the next cell and the row came up short, which quietly dropped any part with a blank description. The other formats keep those parts, so now this one does too
+ */
+final class HtmStockStatusReader implements StockStatusReader {
+
+	private static final int NUM_CELLS = 14;
+	private static final int MAX_TAG_LENGTH = 16; // We only care about td and b tags, so anything longer than this can't be one we want
+
+	private enum State {
+		TEXT,
+		TAG,
+		CELL,
+		CELL_TAG
+	}
+
+	/**
+	 * Checks the start of the file to see if it's one of the UTF-16LE html files CSS8 pretends are xls files.
+	 * That's an optional byte order mark, maybe some whitespace, and then the '<' of the first tag, all encoded as UTF-16LE
+	 */
+	@Override
+	public boolean canRead(byte[] header, int length) {
+
+		int i = StockStatusReaders.startsWith(header, length, 0xFF, 0xFE) ? 2 : 0;
+
+		for (; i + 1 < length; i += 2) {
+			if (header[i + 1] != 0)
+				return false;
+			if (header[i] == '<')
+				return true;
+			if (!Character.isWhitespace(header[i]))
+				return false;
+		}
+		return false;
+
+	}
+
+	/**
+	 * Reads all the valid parts from a CSS8 html stockstatus file
+	 * @param file the file to read
+	 * @return the valid parts, which may be empty
+	 * @throws IOException if the file can't be read
+	 */
+	@Override
+	public List<Part> readParts(File file) throws IOException {
+
+		ArrayList<Part> parts = new ArrayList<>();
+		// The charset for this file is VERY weird, it's UTF-16LE, and any byte order mark is just skipped by the tokenizer
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_16LE)) {
+			readParts(reader, parts::add);
+		}
+		return parts;
+
+	}
+
+	/**
+	 * Reads the valid parts from the provided reader, handing each one off as soon as its line has been read
+	 * @param reader the html text
+	 * @param consumer receives each valid part in the order they appear
+	 * @throws IOException if the reader throws
+	 */
+	static void readParts(Reader reader, Consumer<Part> consumer) throws IOException {
+
+		char[] buffer = new char[8192];
+
+		String[] cells = new String[NUM_CELLS];
+		int numCells = 0;
+		boolean bold = false;
+
+		State state = State.TEXT;
+		StringBuilder tag = new StringBuilder(MAX_TAG_LENGTH);
+		StringBuilder cell = new StringBuilder(64);
+
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+
+			for (int i = 0; i < read; i++) {
+
+				char c = buffer[i];
+
+				if (c == '\n' || c == '\r') {
+					// Cells don't carry over between lines, so anything unfinished is just dropped
+					if (!bold && numCells == NUM_CELLS) {
+						getPart(cells).ifPresent(consumer);
+					}
+					numCells = 0;
+					bold = false;
+					state = State.TEXT;
+					continue;
+				}
+
+				switch (state) {
+					case TEXT -> {
+						if (c == '<') {
+							tag.setLength(0);
+							state = State.TAG;
+						}
+					}
+					case TAG -> {
+						if (c == '>') {
+							if (isTag(tag, "td")) {
+								cell.setLength(0);
+								state = State.CELL;
+							} else {
+								bold |= isTag(tag, "b");
+								state = State.TEXT;
+							}
+						} else if (c == '<') {
+							tag.setLength(0);
+						} else if (tag.length() < MAX_TAG_LENGTH) {
+							tag.append(c);
+						}
+					}
+					case CELL -> {
+						if (c == '<') {
+							tag.setLength(0);
+							state = State.CELL_TAG;
+						} else {
+							cell.append(c);
+						}
+					}
+					case CELL_TAG -> {
+						if (c == '>') {
+							if (isTag(tag, "/td")) {
+								if (numCells < NUM_CELLS) {
+									cells[numCells] = cell.toString();
+								}
+								numCells++;
+								state = State.TEXT;
+							} else {
+								// Any other tag inside the cell is just part of the cell's text
+								bold |= isTag(tag, "b");
+								cell.append('<').append(tag).append('>');
+								state = State.CELL;
+							}
+						} else if (c == '<') {
+							cell.append('<').append(tag);
+							tag.setLength(0);
+						} else {
+							tag.append(c);
+						}
+					}
+				}
+
+			}
+
+		}
+
+		// The last line might not have a line break after it
+		if (!bold && numCells == NUM_CELLS) {
+			getPart(cells).ifPresent(consumer);
+		}
+
+	}
+
+	private static boolean isTag(StringBuilder tag, String name) {
+
+		if (tag.length() != name.length())
+			return false;
+
+		for (int i = 0; i < name.length(); i++) {
+			if (tag.charAt(i) != name.charAt(i))
+				return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Builds a part out of the 14 cells of a row
+	 * @param cells the text of each cell
+	 * @return an Optional with the part, or an empty Optional if any of the number cells can't be read
+	 */
+	private static Optional<Part> getPart(String[] cells) {
+
+		try {
+			return Optional.of(new Part(
+					cells[0], // PartNumber
+					cells[1], // PartDescription
+					cells[2], // WareHouse
+					cells[3], // Bin
+					Integer.parseInt(cells[4]), // PhysicalQty
+					Integer.parseInt(cells[5]), // AllocatedQty
+					Integer.parseInt(cells[6]), // FreeQty
+					Double.parseDouble(cells[7]) // Cost
+			));
+		}
+		catch (NumberFormatException e) {
+			System.out.println("Debug: Expected a number in one of the quantity or cost cells of the row");
+			return Optional.empty();
+		}
+
+	}
+
+}
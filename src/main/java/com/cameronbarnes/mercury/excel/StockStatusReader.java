@@ -0,0 +1,57 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A parser for one of the formats a stockstatus file can show up in. Readers are picked by StockStatusReaders based on the first few bytes of the file,
+ * so a reader only ever sees files it has already said it can read
+ */
+public interface StockStatusReader {
+	
+	/**
+	 * Checks the start of a file to see if it's in the format this reader handles. This should only look at the bytes, it shouldn't try to read the file
+	 * @param header the first bytes of the file
+	 * @param length how many bytes of the header are valid, this is less than the size of the header array if the file is shorter than that
+	 * @return true if this reader should be used for the file
+	 */
+	boolean canRead(byte[] header, int length);
+	
+	/**
+	 * Reads all the valid parts from the file, rows that aren't valid parts are skipped
+	 * @param file the file to read
+	 * @return the valid parts, which may be empty
+	 * @throws IOException if the file can't be read
+	 */
+	List<Part> readParts(File file) throws IOException;
+	
+	/**
+	 * Only real .xlsx workbooks can be read either way, so every other reader just returns itself
+	 * @param streaming true to read the file row by row, false to load the whole thing into memory
+	 * @return a reader for the same format that reads it the requested way
+	 */
+	default StockStatusReader withStreaming(boolean streaming) {
+		return this;
+	}
+	
+}
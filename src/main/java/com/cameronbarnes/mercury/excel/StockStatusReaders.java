@@ -0,0 +1,132 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the stockstatus formats we can read, and picks which one to use for a file by looking at its first few bytes.
+ * This way a file in the wrong format only costs us one small read, rather than POI building half a workbook and then throwing
+ */
+public final class StockStatusReaders {
+	
+	/**
+	 * How many bytes from the start of the file the readers get to look at, it's enough to get past a byte order mark and find the first comma in a csv title row
+	 */
+	public static final int HEADER_LENGTH = 512;
+	
+	/**
+	 * The extensions a stockstatus file can have. The extension doesn't decide which reader gets used, CSS8 calls its html files xls after all,
+	 * but anything else dropped on the ingest page is left alone, since the csv check would happily take any text file with a comma in its first line
+	 */
+	public static final Set<String> EXTENSIONS = Set.of("xlsx", "xls", "csv", "htm", "html");
+	
+	// The order matters, the binary formats have proper signatures, but the csv check is just a guess, so it goes last
+	private static final List<StockStatusReader> READERS = new CopyOnWriteArrayList<>(List.of(
+			new XlsxStockStatusReader(true),
+			new HssfStockStatusReader(),
+			new HtmStockStatusReader(),
+			new CsvStockStatusReader()
+	));
+	
+	private StockStatusReaders() {
+	}
+	
+	/**
+	 * Adds a reader for another format, readers added this way are checked before the built in ones so they can take over a format if they need to
+	 * @param reader the reader to add
+	 */
+	public static void register(StockStatusReader reader) {
+		READERS.add(0, reader);
+	}
+	
+	/**
+	 * @param file the file to check
+	 * @return true if the file has one of the stockstatus extensions, case doesn't matter
+	 */
+	public static boolean hasStockStatusExtension(File file) {
+		
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+		
+	}
+	
+	/**
+	 * Finds the first reader that says it can read a file starting with the provided bytes
+	 * @param header the first bytes of the file
+	 * @param length how many bytes of the header are valid
+	 * @return an Optional with the reader, or an empty Optional if none of them recognise the file
+	 */
+	public static Optional<StockStatusReader> find(byte[] header, int length) {
+		return find(header, length, true);
+	}
+	
+	/**
+	 * Same as above, but with a say in how the reader reads the file
+	 * @param streaming true to read real .xlsx workbooks row by row with the POI event API, false to load the whole workbook into memory
+	 */
+	public static Optional<StockStatusReader> find(byte[] header, int length, boolean streaming) {
+		
+		for (StockStatusReader reader: READERS) {
+			if (reader.canRead(header, length))
+				return Optional.of(reader.withStreaming(streaming));
+		}
+		return Optional.empty();
+		
+	}
+	
+	/**
+	 * Reads the first HEADER_LENGTH bytes of the file, or the whole thing if it's shorter than that
+	 * @param file the file to read from
+	 * @param header the array to read into, this should be HEADER_LENGTH long
+	 * @return how many bytes were actually read, 0 if the file is empty
+	 * @throws IOException if the file can't be read
+	 */
+	public static int readHeader(File file, byte[] header) throws IOException {
+		
+		try (FileInputStream in = new FileInputStream(file)) {
+			return in.readNBytes(header, 0, header.length);
+		}
+		
+	}
+	
+	/**
+	 * @return true if the header starts with the provided signature
+	 */
+	static boolean startsWith(byte[] header, int length, int... signature) {
+		
+		if (length < signature.length)
+			return false;
+		
+		for (int i = 0; i < signature.length; i++) {
+			if ((header[i] & 0xFF) != signature[i])
+				return false;
+		}
+		return true;
+		
+	}
+	
+}
@@ -0,0 +1,215 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads parts out of a real .xlsx stockstatus file using the POI event API instead of building the whole workbook in memory.
+ * Only the first sheet is read, same as the DOM based importer, and each row is handed to ExcelImporter for validation as soon as it's parsed
+ */
+final class StreamingStockStatusReader {
+
+	private StreamingStockStatusReader() {
+	}
+
+	/**
+	 * Reads all the valid parts from the first sheet of the provided package
+	 * @param pkg an already opened OOXML package
+	 * @return a list of the valid parts found, which may be empty
+	 * @throws IOException if the package can't be read
+	 * @throws OpenXML4JException if the package is missing the parts a workbook needs
+	 * @throws SAXException if the sheet xml is malformed
+	 */
+	static List<Part> readParts(OPCPackage pkg) throws IOException, OpenXML4JException, SAXException {
+
+		ArrayList<Part> parts = new ArrayList<>();
+		readParts(pkg, parts::add);
+		return parts;
+
+	}
+
+	/**
+	 * Reads the valid parts from the first sheet of the provided package, handing each one off as soon as its row has been parsed
+	 * @param pkg an already opened OOXML package
+	 * @param consumer receives each valid part in row order
+	 * @throws IOException if the package can't be read
+	 * @throws OpenXML4JException if the package is missing the parts a workbook needs
+	 * @throws SAXException if the sheet xml is malformed
+	 */
+	static void readParts(OPCPackage pkg, Consumer<Part> consumer) throws IOException, OpenXML4JException, SAXException {
+
+		XSSFReader reader = new XSSFReader(pkg);
+		ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+		Iterator<InputStream> sheets = reader.getSheetsData();
+		if (!sheets.hasNext())
+			return;
+
+		try (InputStream sheet = sheets.next()) {
+			XMLReader xmlReader = XMLHelper.newXMLReader();
+			xmlReader.setContentHandler(new SheetHandler(strings, consumer));
+			xmlReader.parse(new InputSource(sheet));
+		}
+		catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		}
+
+	}
+
+	/**
+	 * The kind of value a streamed cell holds, which is all we need to repeat the checks the DOM importer does on CellType
+	 */
+	enum CellKind {
+		STRING,
+		NUMERIC,
+		FORMULA,
+		BLANK,
+		OTHER
+	}
+
+	/**
+	 * SAX handler for a single worksheet, it collects the cells for one row at a time and then passes them to ExcelImporter to be turned into a part
+	 */
+	private static final class SheetHandler extends DefaultHandler {
+
+		private final ReadOnlySharedStringsTable mStrings;
+		private final Consumer<Part> mConsumer;
+
+		// We only care about the first 14 columns, anything past that only counts towards the number of cells in the row
+		private final String[] mValues = new String[14];
+		private final CellKind[] mKinds = new CellKind[14];
+		private int mPhysicalCells;
+		private int mNextColumn;
+
+		private int mColumn;
+		private String mType;
+		private boolean mHasFormula;
+		private boolean mInValue;
+		private final StringBuilder mText = new StringBuilder();
+
+		SheetHandler(ReadOnlySharedStringsTable strings, Consumer<Part> consumer) {
+			mStrings = strings;
+			mConsumer = consumer;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+
+			switch (localName) {
+				case "row" -> {
+					Arrays.fill(mValues, null);
+					Arrays.fill(mKinds, null);
+					mPhysicalCells = 0;
+					mNextColumn = 0;
+				}
+				case "c" -> {
+					String ref = attributes.getValue("r");
+					// The cell reference is optional, if it's missing the cell is just the one after the previous one
+					mColumn = ref == null ? mNextColumn : new CellReference(ref).getCol();
+					mNextColumn = mColumn + 1;
+					mType = attributes.getValue("t");
+					mHasFormula = false;
+					mText.setLength(0);
+					mPhysicalCells++;
+				}
+				case "f" -> mHasFormula = true;
+				case "v", "t" -> mInValue = true;
+				default -> {
+				}
+			}
+
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (mInValue)
+				mText.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+
+			switch (localName) {
+				case "v", "t" -> mInValue = false;
+				case "c" -> endCell();
+				case "row" -> ExcelImporter.getPartFromStreamedRow(mPhysicalCells, mValues, mKinds).ifPresent(mConsumer);
+				default -> {
+				}
+			}
+
+		}
+
+		private void endCell() {
+
+			if (mColumn >= mValues.length)
+				return;
+
+			String text = mText.toString();
+
+			if (mType == null || mType.equals("n")) {
+				if (text.isEmpty()) {
+					mKinds[mColumn] = CellKind.BLANK;
+					mValues[mColumn] = "";
+				} else {
+					mKinds[mColumn] = mHasFormula ? CellKind.FORMULA : CellKind.NUMERIC;
+					mValues[mColumn] = text;
+				}
+				return;
+			}
+
+			switch (mType) {
+				case "s" -> {
+					mKinds[mColumn] = CellKind.STRING;
+					mValues[mColumn] = mStrings.getItemAt(Integer.parseInt(text)).getString();
+				}
+				case "inlineStr", "str" -> {
+					mKinds[mColumn] = CellKind.STRING;
+					mValues[mColumn] = text;
+				}
+				default -> { // Booleans and errors, neither of which should ever be in a valid part row
+					mKinds[mColumn] = CellKind.OTHER;
+					mValues[mColumn] = text;
+				}
+			}
+
+		}
+
+	}
+
+}
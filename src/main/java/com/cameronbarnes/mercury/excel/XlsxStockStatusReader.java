@@ -0,0 +1,75 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Part;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads real .xlsx stockstatus files, which are zip files, so we pick them out by the zip signature at the start of the file
+ */
+final class XlsxStockStatusReader implements StockStatusReader {
+	
+	private final boolean mStreaming;
+	
+	/**
+	 * @param streaming true to read the workbook row by row with the POI event API, falling back to loading the whole workbook if that fails,
+	 *                  or false to always load the whole workbook into memory
+	 */
+	XlsxStockStatusReader(boolean streaming) {
+		mStreaming = streaming;
+	}
+	
+	@Override
+	public boolean canRead(byte[] header, int length) {
+		return StockStatusReaders.startsWith(header, length, 'P', 'K', 0x03, 0x04);
+	}
+	
+	@Override
+	public StockStatusReader withStreaming(boolean streaming) {
+		return streaming == mStreaming ? this : new XlsxStockStatusReader(streaming);
+	}
+	
+	@Override
+	public List<Part> readParts(File file) throws IOException {
+		
+		if (mStreaming) {
+			try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+				return StreamingStockStatusReader.readParts(pkg);
+			}
+			catch (Exception e) {
+				// If the event API can't make sense of the workbook we'll give the DOM importer a try before giving up on it
+				System.out.println("Debug: Streaming import failed for " + file.getName() + ", trying again with the whole workbook");
+			}
+		}
+		
+		try (FileInputStream fileInputStream = new FileInputStream(file); Workbook workbook = new XSSFWorkbook(fileInputStream)) {
+			return ExcelImporter.getPartsFromWorkbook(workbook);
+		}
+		
+	}
+	
+}
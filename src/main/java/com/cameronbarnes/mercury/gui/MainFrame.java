@@ -20,6 +20,7 @@ package com.cameronbarnes.mercury.gui;
 import com.cameronbarnes.mercury.core.Main;
 import com.cameronbarnes.mercury.core.Options;
 import com.cameronbarnes.mercury.core.Session;
+import com.cameronbarnes.mercury.core.SessionListener;
 import com.cameronbarnes.mercury.gui.dialogs.DisplayTextPaneDialog;
 import com.cameronbarnes.mercury.gui.dialogs.TextAreaDialog;
 import com.cameronbarnes.mercury.gui.forms.CountForm;
@@ -28,12 +29,13 @@ import com.cameronbarnes.mercury.gui.forms.MainMenu;
 import com.cameronbarnes.mercury.gui.forms.ResumeForm;
 import com.cameronbarnes.mercury.util.DebugUtils;
 import com.cameronbarnes.mercury.util.HomeAPIUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.ResourceBundle;
 
-public class MainFrame extends JFrame {
+public class MainFrame extends JFrame implements SessionListener {
 	
 	private CountForm mCountForm;
 	private IngestForm mIngestForm;
@@ -227,6 +229,56 @@ public class MainFrame extends JFrame {
 		});
 		optionsMenu.add(generateDebugData);
 		
+		// Real stockstatus files in the import folder, for trying out the ingest with more than a handful of bins
+		JMenuItem generateStockStatus = new JMenuItem();
+		generateStockStatus.setText("Generate Stockstatus Files");
+		generateStockStatus.addActionListener(e -> {
+			String input = JOptionPane.showInputDialog(this, "Number of bins", StockStatusGenerator.Settings.DEFAULT.numBins());
+			if (input == null)
+				return;
+			StockStatusGenerator.Settings settings;
+			try {
+				settings = StockStatusGenerator.Settings.DEFAULT.withNumBins(Integer.parseInt(input.strip())).withSeed(System.nanoTime());
+			}
+			catch (IllegalArgumentException ex) {
+				JOptionPane.showMessageDialog(this, ex.getMessage());
+				return;
+			}
+			new SwingWorker<StockStatusGenerator.Summary, Void>() {
+				@Override
+				protected StockStatusGenerator.Summary doInBackground() throws Exception {
+					return StockStatusGenerator.generate(settings, Options.IMPORT_FOLDER, () -> {});
+				}
+				
+				@Override
+				protected void done() {
+					try {
+						StockStatusGenerator.Summary summary = get();
+						JOptionPane.showMessageDialog(MainFrame.this, "Wrote " + summary.numFiles() + " files with " + summary.numParts() + " parts to " + Options.IMPORT_FOLDER);
+					}
+					catch (Exception ex) {
+						ex.printStackTrace(); // TODO handle this with the HomeAPI
+					}
+				}
+			}.execute();
+		});
+		optionsMenu.add(generateStockStatus);
+		
+	}
+	
+	/**
+	 * Shows the screen for whatever stage the session is in. Main sets the session up on the main thread at startup, before everything else happens on the event dispatch thread, so we always hop over to it
+	 */
+	@Override
+	public void stateChanged(Session session, State state) {
+		SwingUtilities.invokeLater(() -> {
+			switch (state) {
+				case MAIN_MENU -> mainMenu(session);
+				case INGEST -> ingest(session);
+				case COUNT -> count(session);
+				case RESUME -> resume(session);
+			}
+		});
 	}
 	
 	public boolean isCount() {
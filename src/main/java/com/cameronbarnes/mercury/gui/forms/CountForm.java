@@ -17,6 +17,7 @@
 
 package com.cameronbarnes.mercury.gui.forms;
 
+import com.cameronbarnes.mercury.core.ScanClassifier;
 import com.cameronbarnes.mercury.core.Session;
 import com.cameronbarnes.mercury.gui.tables.CountFormTable;
 import com.cameronbarnes.mercury.gui.tables.celleditors.EnhancedCellEditor;
@@ -24,6 +25,7 @@ import com.cameronbarnes.mercury.gui.tables.celleditors.TextAreaCellEditor;
 import com.cameronbarnes.mercury.gui.tables.models.CycleCountTableModel;
 import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.stock.PartSearchIndex;
 import com.cameronbarnes.mercury.util.FileSystemUtils;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
@@ -34,6 +36,8 @@ import javax.swing.plaf.FontUIResource;
 import javax.swing.text.StyleContext;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -52,11 +56,15 @@ public class CountForm {
 	private JLabel mNumBins;
 	private JLabel mScanDataHereLabel;
 	private JLabel mCurrentSelectedBinLabel;
+	private JLabel mSearchLabel;
+	private JTextField mSearchField;
 	
 	private final Session mSession;
 	
-	public static final String PN_PATTERN = "\\w+\\.\\w+\\.\\w+";
-	public static final String BIN_NO_PATTERN = "[A-Za-z]{4}-\\d{4}";
+	// These are just the defaults, the formats actually used come from the ScanClassifier in the options
+	public static final String PN_PATTERN = ScanClassifier.DEFAULT_PART_NUMBER_PATTERN;
+	public static final String BIN_NO_PATTERN = ScanClassifier.DEFAULT_BIN_NUMBER_PATTERN;
+	private static final int SEARCH_RESULT_LIMIT = 50; // Nobody is going to scroll through more than this in a dialog
 	
 	private CycleCountTableModel mCycleCountTableModel;
 	
@@ -123,9 +131,13 @@ public class CountForm {
 		mBinList.addListSelectionListener(e -> updatePartsTable(mBinList.getSelectedIndex()));
 		
 		mScanTextField.addActionListener(e -> {
-			String input = mScanTextField.getText();
-			if (input.matches(PN_PATTERN)) { // Checking to see if we think the entered value is a part number
+			ScanClassifier.Scan scan = mSession.getUnprotectedOptions().getScanClassifier().classify(mScanTextField.getText());
+			String input = scan.value();
+			if (scan.type() == ScanClassifier.ScanType.PART_NUMBER) { // Checking to see if we think the entered value is a part number
 				int pos = mCycleCountTableModel.getIndexOfPartNumber(input);
+				if (pos < 0) { // The part isn't in the current bin, but it might be in another one if the counter found it somewhere else, so we'll check all of them
+					pos = mSession.getPartSearchIndex().findPartNumber(input).stream().findFirst().map(this::selectPart).orElse(-1);
+				}
 				if (pos >= 0) { // previous value returns -1 if the part is not found
 					int col = mCycleCountTableModel.getColumnIndexAtProperty(Part.PartProperty.COUNTED_QUANTITY);
 					if (col >= 0) { // previous value returns -1 if the part property is not currently being displayed, this shouldn't ever be possible with counted quantity but this check is good to have just in case
@@ -168,17 +180,39 @@ public class CountForm {
 					} // TODO maybe send back some error data if this if fails because it should be impossible
 				}
 			}
-			else if (input.matches(BIN_NO_PATTERN)) { // We think the string entered is a bin number
-				for (int i = 0; i < mSession.getBins().size(); i++) { // Find the index of the selected bin and set it in the session and the bin list
-					if (mSession.getBins().get(i).getBinNum().equalsIgnoreCase(input)) {
-						mSession.setCurrentBin(i);
-						mBinList.setSelectedIndex(i);
-					}
+			else if (scan.type() == ScanClassifier.ScanType.BIN_NUMBER) { // We think the string entered is a bin number
+				int index = mSession.getBinIndex(input); // Find the index of the selected bin and set it in the session and the bin list
+				if (index >= 0) {
+					mSession.setCurrentBin(index);
+					mBinList.setSelectedIndex(index);
 				}
 			}
 			mScanTextField.setText(""); // We can clear the text field now that we're done processing the input
 		});
 		
+		mSearchLabel.setText(bundle.getString("count_search_parts") + ": ");
+		mSearchField.addActionListener(e -> {
+			String query = mSearchField.getText();
+			if (query.isBlank())
+				return;
+			List<PartSearchIndex.PartLocation> results = mSession.getPartSearchIndex().search(query, SEARCH_RESULT_LIMIT);
+			if (results.isEmpty()) {
+				JOptionPane.showMessageDialog(mPanel, bundle.getString("count_search_no_results") + ": " + query);
+				return;
+			}
+			PartSearchIndex.PartLocation location = results.get(0);
+			if (results.size() > 1) { // More than one match, so we'll let the user pick which one they meant
+				String[] choices = results.stream().map(result -> result.bin().getBinNum() + "  |  " + result.part().getPartNumber() + "  |  " + result.part().getPartDescription()).toArray(String[]::new);
+				Object choice = JOptionPane.showInputDialog(mPanel, query, bundle.getString("count_search_results_title"), JOptionPane.PLAIN_MESSAGE, null, choices, choices[0]);
+				if (choice == null)
+					return;
+				location = results.get(Arrays.asList(choices).indexOf(choice));
+			}
+			int row = selectPart(location);
+			mPartsTable.changeSelection(row, 0, false, false);
+			mPartsTable.grabFocus();
+		});
+		
 		mScrollPane1.addPropertyChangeListener(evt -> SwingUtilities.invokeLater(() -> mBinList.repaint()));
 		
 		// We set a custom cell editor for Integers so that we can allow the user to fill the cell with the full part count at a single key press if they wish
@@ -198,7 +232,8 @@ public class CountForm {
 	 */
 	public void submitBINorPartNoToField(String text) {
 		
-		if (text.matches(PN_PATTERN) || text.matches(BIN_NO_PATTERN)) {
+		ScanClassifier.ScanType type = mSession.getUnprotectedOptions().getScanClassifier().classify(text).type();
+		if (type == ScanClassifier.ScanType.PART_NUMBER || type == ScanClassifier.ScanType.BIN_NUMBER) {
 			SwingUtilities.invokeLater(() -> {
 				mScanTextField.setText(text);
 				mScanTextField.postActionEvent();
@@ -222,8 +257,8 @@ public class CountForm {
 		
 		if (mSession.getUnprotectedOptions().shouldShowAllPartsProgress()) {
 			
-			int totalParts = mSession.getBins().stream().mapToInt(bin -> bin.getParts().size()).sum();
-			int completedParts = totalParts - mSession.getBins().stream().mapToInt(bin -> (int) bin.getParts().stream().filter(Part::needsAdjustment).count()).sum();
+			int totalParts = mSession.getBinRegistry().getNumParts();
+			int completedParts = totalParts - mSession.getBinRegistry().getNumNeedsAdjustment();
 			
 			mProgressBar.setMaximum(totalParts);
 			mProgressBar.setValue(completedParts);
@@ -231,13 +266,14 @@ public class CountForm {
 		}
 		else {
 			
-			if (!mSession.getBins().isEmpty()) {
-				int parts = mSession.getBins().get(mSession.getCurrentBin()).getParts().size();
-				int completedParts = (int) (parts - mSession.getBins().get(mSession.getCurrentBin()).getParts().stream().filter(Part::needsAdjustment).count());
+			if (!mSession.getBins().isEmpty() && mSession.getCurrentBin() >= 0) {
+				Bin bin = mSession.getBins().get(mSession.getCurrentBin());
+				int parts = bin.getParts().size();
+				int completedParts = parts - bin.getNumNeedsAdjustment();
 				
 				mProgressBar.setMaximum(parts);
 				mProgressBar.setValue(completedParts);
-			} {
+			} else {
 				mProgressBar.setMaximum(100);
 				mProgressBar.setValue(100);
 			}
@@ -307,6 +343,8 @@ public class CountForm {
 		
 		if (bin >= mSession.getBins().size())
 			bin = 0;
+		if (mCycleCountTableModel != null)
+			mCycleCountTableModel.dispose(); // The old model is listening to its bin for changes, we don't want the bin holding onto it
 		if (mSession.getBins().isEmpty()) { // If there are no bins then we give it an empty bin to look at
 			mCycleCountTableModel = new CycleCountTableModel(new ArrayList<>(), mSession.getUnprotectedOptions(), runnable);
 			mPartsTable.setModel(mCycleCountTableModel);
@@ -314,7 +352,7 @@ public class CountForm {
 			mSession.setCurrentBin(-1);
 		}
 		else {
-			mCycleCountTableModel = new CycleCountTableModel(mSession.getBins().get(bin).getParts(), mSession.getUnprotectedOptions(), runnable);
+			mCycleCountTableModel = new CycleCountTableModel(mSession.getBins().get(bin), mSession.getUnprotectedOptions(), runnable);
 			mPartsTable.setModel(mCycleCountTableModel);
 			mCurrentBinText.setText(mSession.getBins().get(bin).getBinNum() + "  |  " + bundle.getString("count_number_of_parts") + ": " + mSession.getBins().get(bin).getParts().size());
 			mSession.setCurrentBin(bin);
@@ -322,6 +360,23 @@ public class CountForm {
 		
 	}
 	
+	/**
+	 * Switches to the bin the part is in, if it isn't the current bin already
+	 * @param location where the part is
+	 * @return the row of the part in the parts table
+	 */
+	private int selectPart(PartSearchIndex.PartLocation location) {
+		
+		int bin = mSession.getBinRegistry().indexOf(location.bin());
+		if (bin >= 0 && bin != mSession.getCurrentBin()) {
+			mSession.setCurrentBin(bin);
+			mBinList.setSelectedIndex(bin);
+			mBinList.ensureIndexIsVisible(bin);
+		}
+		return location.row();
+		
+	}
+	
 	/**
 	 * Handles creating the UI components that I've marked as custom in the form
 	 */
@@ -353,10 +408,10 @@ public class CountForm {
 		final JSplitPane splitPane1 = new JSplitPane();
 		mPanel.add(splitPane1, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, null, new Dimension(200, 200), null, 0, false));
 		mLeftPanel = new JPanel();
-		mLeftPanel.setLayout(new GridLayoutManager(3, 1, new Insets(0, 0, 0, 0), -1, -1));
+		mLeftPanel.setLayout(new GridLayoutManager(5, 1, new Insets(0, 0, 0, 0), -1, -1));
 		splitPane1.setLeftComponent(mLeftPanel);
 		final Spacer spacer1 = new Spacer();
-		mLeftPanel.add(spacer1, new GridConstraints(2, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, 1, null, null, null, 0, false));
+		mLeftPanel.add(spacer1, new GridConstraints(4, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, 1, null, null, null, 0, false));
 		mNumBins = new JLabel();
 		Font mNumBinsFont = this.$$$getFont$$$(null, -1, 14, mNumBins.getFont());
 		if (mNumBinsFont != null) mNumBins.setFont(mNumBinsFont);
@@ -366,6 +421,13 @@ public class CountForm {
 		mLeftPanel.add(scrollPane1, new GridConstraints(1, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
 		mBinList = new JList();
 		scrollPane1.setViewportView(mBinList);
+		mSearchLabel = new JLabel();
+		Font mSearchLabelFont = this.$$$getFont$$$(null, -1, 14, mSearchLabel.getFont());
+		if (mSearchLabelFont != null) mSearchLabel.setFont(mSearchLabelFont);
+		mSearchLabel.setText("Search Parts: ");
+		mLeftPanel.add(mSearchLabel, new GridConstraints(2, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+		mSearchField = new JTextField();
+		mLeftPanel.add(mSearchField, new GridConstraints(3, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_FIXED, null, new Dimension(150, -1), null, 0, false));
 		mRightPanel = new JPanel();
 		mRightPanel.setLayout(new GridLayoutManager(5, 3, new Insets(0, 0, 0, 0), -1, -1));
 		splitPane1.setRightComponent(mRightPanel);
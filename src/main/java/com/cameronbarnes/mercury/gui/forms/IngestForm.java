@@ -17,6 +17,7 @@
 
 package com.cameronbarnes.mercury.gui.forms;
 
+import com.cameronbarnes.mercury.core.IngestWorker;
 import com.cameronbarnes.mercury.core.Options;
 import com.cameronbarnes.mercury.core.Session;
 import com.cameronbarnes.mercury.gui.tables.models.IngestBinTableModel;
@@ -50,8 +51,11 @@ public class IngestForm {
 	private JTable mIngestBinTable;
 	private JButton mAddEmptyBin;
 	private JButton mImportFromFolder;
+	private JProgressBar mIngestProgress;
+	private JButton mCancelButton;
 	
 	private final Session mSession;
+	private IngestWorker mIngestWorker; // Only set while files are being imported
 	
 	public IngestForm(Session session) {
 		
@@ -70,7 +74,7 @@ public class IngestForm {
 			FileSystemUtils.moveAllFromProcessToIngest();
 		});
 		
-		mImportFromFolder.addActionListener(e -> mSession.addIngest(FileSystemUtils.getDirectoryWithFileChooser().orElse(Options.IMPORT_FOLDER)));
+		mImportFromFolder.addActionListener(e -> startIngest(List.of(FileSystemUtils.getDirectoryWithFileChooser().orElse(Options.IMPORT_FOLDER))));
 		mImportFromFolder.setText(bundle.getString("word_select_folder"));
 		
 		new DropTarget(mPanel, new DropTargetListener() {
@@ -97,6 +101,12 @@ public class IngestForm {
 			@Override
 			public void drop(DropTargetDropEvent event) {
 				
+				// We only run one ingest at a time, the user can drop the rest in once this one is done
+				if (mIngestWorker != null) {
+					event.rejectDrop();
+					return;
+				}
+				
 				event.acceptDrop(DnDConstants.ACTION_COPY);
 				
 				Transferable transferable = event.getTransferable();
@@ -110,7 +120,7 @@ public class IngestForm {
 						if (flavor.isFlavorJavaFileListType()) {
 							//TODO prompt if we want to move these files or copy them
 							//noinspection unchecked
-							mSession.addIngest((List<File>) transferable.getTransferData(flavor));
+							startIngest((List<File>) transferable.getTransferData(flavor));
 							
 						}
 						
@@ -135,7 +145,7 @@ public class IngestForm {
 				final String input = tmp.replace(" ", "-").toUpperCase();
 				if (input.isEmpty())
 					return;
-				if (input.matches(CountForm.BIN_NO_PATTERN)) {
+				if (mSession.getUnprotectedOptions().getScanClassifier().isBinNumber(input)) {
 					// We need to check to make sure this bin isn't already in the list, if it is, alert the user and prompt again
 					if (mSession.getBins().stream().anyMatch(bin -> bin.getBinNum().equalsIgnoreCase(input))) {
 						// Alert the user that the bin they've entered is already in the system
@@ -150,16 +160,65 @@ public class IngestForm {
 					else {
 						wareHouse = "301-Good Parts"; // TODO Allow user input for this value later
 					}
-					Bin newBin = new Bin(input, wareHouse, new ArrayList<>(), null);
-					((IngestBinTableModel) mIngestBinTable.getModel()).addBin(newBin);
+					Bin newBin = new Bin(input, wareHouse, new ArrayList<>(), null, mSession.getUnprotectedOptions().getScanClassifier());
+					mSession.addBin(newBin);
 					((IngestBinTableModel) mIngestBinTable.getModel()).fireTableDataChanged();
 				}
 				
 			}
 		});
 		
+		mCancelButton.addActionListener(e -> {
+			if (mIngestWorker != null) {
+				mIngestWorker.requestCancel();
+				mCancelButton.setEnabled(false); // It'll stop after the file it's on, and then setIngesting hides the button
+			}
+		});
+		
 		mIngestBinTable.getTableHeader().setFont(mIngestBinTable.getTableHeader().getFont().deriveFont(Font.BOLD, 14));
 		
+		setIngesting(false);
+		
+	}
+	
+	/**
+	 * Imports the files in the background, the table fills in as the bins are read and the progress bar shows how many of the files have been looked at
+	 * @param files the files to import, any directories have the files in them imported
+	 */
+	private void startIngest(List<File> files) {
+		
+		if (mIngestWorker != null)
+			return;
+		
+		IngestBinTableModel model = (IngestBinTableModel) mIngestBinTable.getModel();
+		mIngestWorker = new IngestWorker(mSession, files, bin -> model.binAdded(mSession.getBinRegistry().indexOf(bin)), () -> {
+			mIngestWorker = null;
+			setIngesting(false);
+		});
+		mIngestWorker.addPropertyChangeListener(evt -> {
+			if ("progress".equals(evt.getPropertyName())) {
+				mIngestProgress.setValue((Integer) evt.getNewValue());
+			}
+		});
+		setIngesting(true);
+		mIngestWorker.execute();
+		
+	}
+	
+	/**
+	 * Shows the progress bar and cancel button, and stops the user from changing the bins or moving on while files are being imported
+	 */
+	private void setIngesting(boolean ingesting) {
+		
+		mIngestProgress.setValue(0);
+		mIngestProgress.setVisible(ingesting);
+		mCancelButton.setVisible(ingesting);
+		mCancelButton.setEnabled(ingesting);
+		mNextButton.setEnabled(!ingesting);
+		mClearButton.setEnabled(!ingesting);
+		mAddEmptyBin.setEnabled(!ingesting);
+		mImportFromFolder.setEnabled(!ingesting);
+		
 	}
 	
 	public void updateFont() {
@@ -177,7 +236,7 @@ public class IngestForm {
 	private void $$$setupUI$$$() {
 		
 		mPanel = new JPanel();
-		mPanel.setLayout(new GridLayoutManager(5, 5, new Insets(0, 0, 0, 0), -1, -1));
+		mPanel.setLayout(new GridLayoutManager(6, 5, new Insets(0, 0, 0, 0), -1, -1));
 		mPanel.setVisible(true);
 		final Spacer spacer1 = new Spacer();
 		mPanel.add(spacer1, new GridConstraints(0, 1, 1, 2, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_WANT_GROW, 1, null, null, null, 0, false));
@@ -217,6 +276,12 @@ public class IngestForm {
 		if (mImportFromFolderFont != null) mImportFromFolder.setFont(mImportFromFolderFont);
 		mImportFromFolder.setText("Select FolderX");
 		mPanel.add(mImportFromFolder, new GridConstraints(0, 3, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+		mIngestProgress = new JProgressBar();
+		mIngestProgress.setStringPainted(true);
+		mPanel.add(mIngestProgress, new GridConstraints(5, 0, 1, 3, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_WANT_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+		mCancelButton = new JButton();
+		this.$$$loadButtonText$$$(mCancelButton, this.$$$getMessageFromBundle$$$("labels", "word_cancel"));
+		mPanel.add(mCancelButton, new GridConstraints(5, 3, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_HORIZONTAL, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
 	}
 	
 	/**
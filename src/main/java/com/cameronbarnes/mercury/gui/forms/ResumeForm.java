@@ -17,6 +17,7 @@
 
 package com.cameronbarnes.mercury.gui.forms;
 
+import com.cameronbarnes.mercury.core.ResumeWorker;
 import com.cameronbarnes.mercury.core.SavedOngoing;
 import com.cameronbarnes.mercury.core.Session;
 import com.cameronbarnes.mercury.util.FileSystemUtils;
@@ -39,6 +40,7 @@ public class ResumeForm {
     private JLabel mCurrentlySelectedText;
     private JLabel mTitle;
     private JLabel mSummary;
+    private JProgressBar mLoadProgress;
 
     private final Session mSession;
 
@@ -59,15 +61,35 @@ public class ResumeForm {
 
         mResumeButton.addActionListener(e -> {
             SavedOngoing savedSession = savedOngoingList.get(mSavedSessionsList.getSelectedIndex());
-            FileSystemUtils.moveFilesFromSavedSession(savedSession);
-            mSession.setBins(savedSession.getBins());
-            mSession.count();
+            // The list was built from the manifests, so this is where the bins are actually read from the disk, which happens in the background
+            setLoading(true);
+            ResumeWorker worker = new ResumeWorker(mSession, savedSession, () -> setLoading(false));
+            worker.addPropertyChangeListener(evt -> {
+                if ("progress".equals(evt.getPropertyName())) {
+                    mLoadProgress.setValue((Integer) evt.getNewValue());
+                }
+            });
+            worker.execute();
         });
 
+        mLoadProgress.setVisible(false);
         updateUILang(bundle);
 
     }
 
+    /**
+     * Shows the progress bar and stops the user from picking another session or leaving while a session is being loaded
+     */
+    private void setLoading(boolean loading) {
+
+        mLoadProgress.setValue(0);
+        mLoadProgress.setVisible(loading);
+        mResumeButton.setEnabled(!loading);
+        mMainMenuButton.setEnabled(!loading);
+        mSavedSessionsList.setEnabled(!loading);
+
+    }
+
     private void updateUILang(ResourceBundle bundle) {
 
         mTitle.setText(bundle.getString("resume_form_title"));
@@ -93,7 +115,7 @@ public class ResumeForm {
      */
     private void $$$setupUI$$$() {
         mPanel = new JPanel();
-        mPanel.setLayout(new com.intellij.uiDesigner.core.GridLayoutManager(6, 4, new Insets(0, 0, 0, 0), -1, -1));
+        mPanel.setLayout(new com.intellij.uiDesigner.core.GridLayoutManager(7, 4, new Insets(0, 0, 0, 0), -1, -1));
         mTitle = new JLabel();
         Font mTitleFont = this.$$$getFont$$$(null, -1, 24, mTitle.getFont());
         if (mTitleFont != null) mTitle.setFont(mTitleFont);
@@ -125,6 +147,9 @@ public class ResumeForm {
         mPanel.add(scrollPane1, new com.intellij.uiDesigner.core.GridConstraints(3, 0, 1, 3, com.intellij.uiDesigner.core.GridConstraints.ANCHOR_CENTER, com.intellij.uiDesigner.core.GridConstraints.FILL_BOTH, com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_CAN_SHRINK | com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_WANT_GROW, com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_CAN_SHRINK | com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
         mSavedSessionsList = new JList();
         scrollPane1.setViewportView(mSavedSessionsList);
+        mLoadProgress = new JProgressBar();
+        mLoadProgress.setStringPainted(true);
+        mPanel.add(mLoadProgress, new com.intellij.uiDesigner.core.GridConstraints(6, 0, 1, 3, com.intellij.uiDesigner.core.GridConstraints.ANCHOR_CENTER, com.intellij.uiDesigner.core.GridConstraints.FILL_HORIZONTAL, com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_CAN_SHRINK | com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_WANT_GROW, com.intellij.uiDesigner.core.GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
     }
 
     /**
@@ -30,6 +30,8 @@ public class CountFormTable extends JTable {
 	
 	private final HighlightCellRenderer mHighlightCellRenderer;
 	private final Session mSession;
+	// Swing asks for the row height constantly while scrolling, so we only work it out again when the font changes, 0 means it needs working out
+	private int mRowHeight;
 	
 	public CountFormTable(Session session) {
 		mSession = session;
@@ -61,6 +63,7 @@ public class CountFormTable extends JTable {
 	@Override
 	public void setFont(Font font) {
 		super.setFont(font);
+		mRowHeight = 0;
 		if (mHighlightCellRenderer != null)
 			mHighlightCellRenderer.setFont(font);
 	}
@@ -72,7 +75,13 @@ public class CountFormTable extends JTable {
 	
 	@Override
 	public int getRowHeight() {
-		return this.getGraphics().getFontMetrics(mSession.getUnprotectedOptions().getFont()).getHeight() + 2;
+		
+		if (mSession == null) // JTable's constructor can get here before we've been set up
+			return super.getRowHeight();
+		if (mRowHeight == 0)
+			mRowHeight = getFontMetrics(mSession.getUnprotectedOptions().getFont()).getHeight() + 2;
+		return mRowHeight;
+		
 	}
 	
 	@Override
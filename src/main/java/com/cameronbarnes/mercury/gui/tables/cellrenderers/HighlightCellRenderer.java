@@ -18,13 +18,17 @@
 package com.cameronbarnes.mercury.gui.tables.cellrenderers;
 
 import com.cameronbarnes.mercury.core.Session;
-import com.cameronbarnes.mercury.stock.Bin;
-import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.gui.tables.models.CycleCountTableModel;
 
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 
+/**
+ * Colours the rows of the count table based on whether the part still needs adjusting. This gets called for every visible cell every time the table paints,
+ * so it doesn't create anything or go looking through the session, it reuses this label and gets the row's status from the table model
+ */
 public class HighlightCellRenderer extends DefaultTableCellRenderer {
 	
 	private final Color mHighlightGoodColour;
@@ -35,7 +39,9 @@ public class HighlightCellRenderer extends DefaultTableCellRenderer {
 	private final Color mHighlightSelectedBadColour;
 	private final Color mHighlightSelectedAdjustedColour;
 	
-	private final Session mSession;
+	// These come from the look and feel, so they're looked up again in updateUI instead of on every cell
+	private Border mFocusBorder;
+	private Border mNoFocusBorder;
 	
 	public HighlightCellRenderer(Session session) {
 		mHighlightGoodColour = new Color(0, 255, 0, 128);
@@ -44,35 +50,42 @@ public class HighlightCellRenderer extends DefaultTableCellRenderer {
 		mHighlightSelectedGoodColour = new Color(0, 255, 0, 220);
 		mHighlightSelectedBadColour = new Color(255, 64, 90, 255);
 		mHighlightSelectedAdjustedColour = new Color(255, 115,0, 255);
-		mSession = session;
-		setFont(mSession.getUnprotectedOptions().getFont()); // Idk why we're having issues with font, but I'm just going to set this everywhere I possibly can and hope that resolves the issue
+		setFont(session.getUnprotectedOptions().getFont()); // Idk why we're having issues with font, but I'm just going to set this everywhere I possibly can and hope that resolves the issue
 		setOpaque(true);
 	}
 	
 	@Override
-	public Component getTableCellRendererComponent(JTable table, Object object, boolean isSelected, boolean hasFocus, int row, int col) {
+	public void updateUI() {
+		
+		super.updateUI();
+		mFocusBorder = UIManager.getBorder("Table.focusCellHighlightBorder");
+		mNoFocusBorder = UIManager.getBorder("Table.cellNoFocusBorder");
+		if (mNoFocusBorder == null)
+			mNoFocusBorder = noFocusBorder;
+		
+	}
 	
-		Component component = super.getTableCellRendererComponent(new JTable(), object, isSelected, hasFocus, row, col);
-		((JLabel) component).setOpaque(true);
+	@Override
+	public Component getTableCellRendererComponent(JTable table, Object object, boolean isSelected, boolean hasFocus, int row, int col) {
+		
+		// The font is kept in sync by CountFormTable.setFont, so we don't set it here
+		setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+		setBorder(hasFocus && mFocusBorder != null ? mFocusBorder : mNoFocusBorder);
+		setValue(object);
 		
-		if (mSession.getCurrentBin() >= 0) {
-			
-			Bin bin = mSession.getBins().get(mSession.getCurrentBin());
-			Part part = bin.getParts().get(row);
-			
-			if (part.needsAdjustment()) {
-				setBackground(isSelected ? mHighlightSelectedBadColour : mHighlightBadColour);
-			} else if (part.getAdjustment() != 0) {
-				setBackground(isSelected ? mHighlightSelectedAdjustedColour : mHighlightAdjustedColour);
-			}else {
-				setBackground(isSelected ? mHighlightSelectedGoodColour : mHighlightGoodColour);
+		if (table.getModel() instanceof CycleCountTableModel model) {
+			switch (model.getRowStatus(row)) {
+				case NEEDS_ADJUSTMENT -> setBackground(isSelected ? mHighlightSelectedBadColour : mHighlightBadColour);
+				case ADJUSTED -> setBackground(isSelected ? mHighlightSelectedAdjustedColour : mHighlightAdjustedColour);
+				default -> setBackground(isSelected ? mHighlightSelectedGoodColour : mHighlightGoodColour);
 			}
-			
+		}
+		else {
+			setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
 		}
 		
-		component.setFont(mSession.getUnprotectedOptions().getFont());
-		return component;
-	
+		return this;
+		
 	}
 	
 }
@@ -18,24 +18,100 @@
 package com.cameronbarnes.mercury.gui.tables.models;
 
 import com.cameronbarnes.mercury.core.IUnprotectedOptions;
+import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.stock.PartChangeListener;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class CycleCountTableModel extends AbstractTableModel {
 	
+	/**
+	 * How a row should be highlighted, good if it's been counted correctly or doesn't need counting, needs adjustment if the count is off, or adjusted if it's been adjusted
+	 */
+	public enum RowStatus {
+		GOOD,
+		NEEDS_ADJUSTMENT,
+		ADJUSTED
+	}
+	
 	private final List<Part> mParts;
+	private final Bin mBin; // Only used for its part number index, this is null if we were just given a list of parts
 	private final IUnprotectedOptions mOptions;
 	private final Runnable mUpdateRunnable;
+	// The property shown in each column, in column order, rebuilt whenever the table structure changes
+	private Part.PartProperty[] mColumns;
+	// The highlight for each row, the renderer asks for this for every cell it paints so it's kept up to date as the parts change rather than being worked out every time
+	private final RowStatus[] mRowStatus;
+	private final PartChangeListener mStatusListener = this::partChanged;
 	
 	public CycleCountTableModel(List<Part> parts, IUnprotectedOptions options, Runnable update) {
+		this(parts, null, options, update);
+	}
+	
+	public CycleCountTableModel(Bin bin, IUnprotectedOptions options, Runnable update) {
+		this(bin.getParts(), bin, options, update);
+	}
+	
+	private CycleCountTableModel(List<Part> parts, Bin bin, IUnprotectedOptions options, Runnable update) {
 		super();
 		mParts = parts;
+		mBin = bin;
 		mOptions = options;
 		mUpdateRunnable = update;
+		mColumns = buildColumns(options.getPartDetailSettings());
+		mRowStatus = new RowStatus[parts.size()];
+		for (int i = 0; i < mRowStatus.length; i++) {
+			mRowStatus[i] = statusOf(parts.get(i));
+		}
+		if (mBin != null)
+			mBin.addPartChangeListener(mStatusListener);
+	}
+	
+	/**
+	 * Stops listening for changes to the bin's parts, this should be called when the model is replaced so the bin doesn't keep the old model around
+	 */
+	public void dispose() {
+		if (mBin != null)
+			mBin.removePartChangeListener(mStatusListener);
+	}
+	
+	/**
+	 * @param rowIndex the row to check
+	 * @return how the row should be highlighted
+	 */
+	public RowStatus getRowStatus(int rowIndex) {
+		return mRowStatus[rowIndex];
+	}
+	
+	private static RowStatus statusOf(Part part) {
+		
+		if (part.needsAdjustment())
+			return RowStatus.NEEDS_ADJUSTMENT;
+		if (part.getAdjustment() != 0)
+			return RowStatus.ADJUSTED;
+		return RowStatus.GOOD;
+		
+	}
+	
+	private void partChanged(Part part, Part.PartProperty property, Object oldValue, Object newValue) {
+		
+		int row = mBin.indexOfPart(part.getPartNumber());
+		if (row < 0 || mParts.get(row) != part) { // A bin can have the same part number more than once, so if the index gave us a different part we have to go looking for it
+			row = -1;
+			for (int i = 0; i < mParts.size(); i++) {
+				if (mParts.get(i) == part) {
+					row = i;
+					break;
+				}
+			}
+		}
+		if (row >= 0)
+			mRowStatus[row] = statusOf(part);
+		
 	}
 	
 	@Override
@@ -45,82 +121,54 @@ public class CycleCountTableModel extends AbstractTableModel {
 	
 	@Override
 	public int getColumnCount() {
-		Map<String, Boolean> properties = mOptions.getPartDetailSettings();
-		int numRows = 6; // This is how many we're definitely going to show, PN, Description, PhysicalQty, CountedQty, Cost, and Adjustment values
-		if (properties.get("WareHouse"))
-			numRows++;
-		if (properties.get("Bin"))
-			numRows++;
-		if (properties.get("AllocatedQuantity"))
-			numRows++;
-		if (properties.get("FreeQuantity"))
-			numRows++;
-		if (properties.get("Comments"))
-			numRows++;
-		
-		return numRows;
+		return mColumns.length;
 	}
 	
-	private Part.PartProperty getPartPropertyAtColumnIndex(int index) {
+	/**
+	 * The table asks for the property of a column for every cell every time it paints, so we work out which property is in which column once and keep it here.
+	 * It's only rebuilt when the table structure changes, which is what CountForm does when the part detail settings are changed
+	 */
+	@Override
+	public void fireTableStructureChanged() {
 		
-		Map<String, Boolean> properties = mOptions.getPartDetailSettings();
-		boolean warehouse = properties.get("WareHouse");
-		boolean bin = properties.get("Bin");
-		boolean allocatedQty = properties.get("AllocatedQuantity");
-		boolean freeQty = properties.get("FreeQuantity");
-		boolean comments = properties.get("Comments");
+		mColumns = buildColumns(mOptions.getPartDetailSettings());
+		super.fireTableStructureChanged();
 		
-		LinkedList<Part.PartProperty> out = new LinkedList<>();
+	}
+	
+	private static Part.PartProperty[] buildColumns(Map<String, Boolean> properties) {
+		
+		ArrayList<Part.PartProperty> out = new ArrayList<>(Part.PartProperty.values().length);
 		out.add(Part.PartProperty.PART_NUMBER);
 		out.add(Part.PartProperty.PART_DESCRIPTION);
-		if (warehouse)
+		if (properties.get("WareHouse"))
 			out.add(Part.PartProperty.WAREHOUSE);
-		if (bin)
+		if (properties.get("Bin"))
 			out.add(Part.PartProperty.BIN);
 		out.add(Part.PartProperty.PHYSICAL_QUANTITY);
-		if (allocatedQty)
+		if (properties.get("AllocatedQuantity"))
 			out.add(Part.PartProperty.ALLOCATED_QUANTITY);
-		if (freeQty)
+		if (properties.get("FreeQuantity"))
 			out.add(Part.PartProperty.FREE_QUANTITY);
 		out.add(Part.PartProperty.COUNTED_QUANTITY);
 		out.add(Part.PartProperty.COST);
 		out.add(Part.PartProperty.ADJUSTMENT);
-		if (comments)
+		if (properties.get("Comments"))
 			out.add(Part.PartProperty.COMMENTS);
 		
-		return out.get(index);
+		return out.toArray(new Part.PartProperty[0]);
 		
 	}
 	
+	private Part.PartProperty getPartPropertyAtColumnIndex(int index) {
+		return mColumns[index];
+	}
+	
 	public int getColumnIndexAtProperty(Part.PartProperty property) {
 		
-		Map<String, Boolean> properties = mOptions.getPartDetailSettings();
-		boolean warehouse = properties.get("WareHouse");
-		boolean bin = properties.get("Bin");
-		boolean allocatedQty = properties.get("AllocatedQuantity");
-		boolean freeQty = properties.get("FreeQuantity");
-		boolean comments = properties.get("Comments");
-		
-		LinkedList<Part.PartProperty> out = new LinkedList<>();
-		out.add(Part.PartProperty.PART_NUMBER);
-		out.add(Part.PartProperty.PART_DESCRIPTION);
-		if (warehouse)
-			out.add(Part.PartProperty.WAREHOUSE);
-		if (bin)
-			out.add(Part.PartProperty.BIN);
-		out.add(Part.PartProperty.PHYSICAL_QUANTITY);
-		if (allocatedQty)
-			out.add(Part.PartProperty.ALLOCATED_QUANTITY);
-		if (freeQty)
-			out.add(Part.PartProperty.FREE_QUANTITY);
-		out.add(Part.PartProperty.COUNTED_QUANTITY);
-		out.add(Part.PartProperty.COST);
-		out.add(Part.PartProperty.ADJUSTMENT);
-		if (comments)
-			out.add(Part.PartProperty.COMMENTS);
-		
-		for (int i = 0; i < out.size(); i++) {
-			if (out.get(i) == property)
+		Part.PartProperty[] columns = mColumns;
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] == property)
 				return i;
 		}
 		
@@ -271,6 +319,9 @@ public class CycleCountTableModel extends AbstractTableModel {
 	
 	public int getIndexOfPartNumber(String partNumber) {
 		
+		if (mBin != null)
+			return mBin.indexOfPart(partNumber);
+		
 		for (int i = 0; i < mParts.size(); i++) {
 			if (mParts.get(i).getPartNumber().equalsIgnoreCase(partNumber))
 				return i;
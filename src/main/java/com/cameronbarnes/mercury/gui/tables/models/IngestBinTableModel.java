@@ -20,17 +20,41 @@ package com.cameronbarnes.mercury.gui.tables.models;
 import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
 
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.List;
 
 public class IngestBinTableModel extends AbstractTableModel {
 	
-	private final ArrayList<Bin> mBins;
+	private final List<Bin> mBins;
+	// How many rows the table last heard about, so when a bin is added we know if it's a new row or if it replaced an older bin
+	private int mNumRows;
 	
-	public IngestBinTableModel(ArrayList<Bin> bins) {
+	public IngestBinTableModel(List<Bin> bins) {
 		super();
 		mBins = bins;
+		mNumRows = bins.size();
+	}
+	
+	/**
+	 * Lets the table know a bin has been put into the list, this is how the table fills in while an ingest is running.
+	 * A bin replacing an older one with the same bin number ends up in the same spot as the old one, so that's just an update to that row
+	 * @param index where the bin is in the list
+	 */
+	public void binAdded(int index) {
+		
+		if (mBins.size() > mNumRows)
+			fireTableRowsInserted(index, index);
+		else
+			fireTableRowsUpdated(index, index);
+		
+	}
+	
+	@Override
+	public void fireTableChanged(TableModelEvent e) {
+		// Everything that tells the table about a change goes through here
+		mNumRows = mBins.size();
+		super.fireTableChanged(e);
 	}
 	
 	@Override
@@ -80,9 +104,4 @@ public class IngestBinTableModel extends AbstractTableModel {
 		
 	}
 	
-	public void addBin(Bin bin) {
-		mBins.add(bin);
-		mBins.sort(Comparator.comparing(Bin::getBinNum));
-	}
-	
 }
@@ -17,10 +17,14 @@
 
 package com.cameronbarnes.mercury.stock;
 
-import com.cameronbarnes.mercury.gui.forms.CountForm;
+import com.cameronbarnes.mercury.core.ScanClassifier;
 
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Bin {
 
@@ -29,16 +33,79 @@ public class Bin {
 	private final List<Part> mParts;
 	// This is so that we can compare which bin is newest if we try to add two stock status files for the same bin
 	private final FileTime mFileTime;
+	private final transient CopyOnWriteArrayList<PartChangeListener> mListeners = new CopyOnWriteArrayList<>();
+	// Part number, lower case, to the index of the part in the bin. Built the first time a part is looked up, since most bins never get scanned
+	private transient HashMap<String, Integer> mPartIndex;
+	// How many parts still need adjusting, kept up to date as parts change so checking if the bin is done doesn't mean looking at every part
+	private transient int mNumNeedsAdjustment;
 	
+	/**
+	 * For bins whose bin number has already been checked, like bins loaded from a save or copied, the bin number isn't checked again
+	 */
 	public Bin(String binNum, String warehouse, List<Part> parts, FileTime fileTime) {
 		mParts = parts;
 		mBinNum = binNum;
 		mWarehouse = warehouse;
 		mFileTime = fileTime;
-		if (!mBinNum.matches(CountForm.BIN_NO_PATTERN))
+		mParts.forEach(part -> part.setChangeListener(this::firePartChanged));
+		recountNeedsAdjustment();
+	}
+	
+	/**
+	 * For new bins, read from a stockstatus file or typed in, the bin number is checked against the site's bin number format for the warehouse
+	 * @param classifier the classifier built from the site's options
+	 */
+	public Bin(String binNum, String warehouse, List<Part> parts, FileTime fileTime, ScanClassifier classifier) {
+		this(binNum, warehouse, parts, fileTime);
+		if (!classifier.isBinNumber(mBinNum, mWarehouse))
 			throw new RuntimeException("Invalid Bin Number: " + mBinNum); // TODO handle this with the HomeAPI
 	}
 	
+	/**
+	 * @return a new bin with a copy of each of the parts, without any of this bin's listeners, so it can be saved from another thread while this one keeps changing
+	 */
+	public Bin copy() {
+		
+		ArrayList<Part> parts = new ArrayList<>(mParts.size());
+		for (Part part: mParts) {
+			parts.add(part.copy());
+		}
+		return new Bin(mBinNum, mWarehouse, parts, mFileTime);
+		
+	}
+	
+	/**
+	 * Counts the parts needing adjustment from scratch. This only needs calling if parts were changed without telling the bin, like when saved edits are restored
+	 */
+	public void recountNeedsAdjustment() {
+		mNumNeedsAdjustment = (int) mParts.stream().filter(Part::needsAdjustment).count();
+	}
+	
+	/**
+	 * @return the number of parts in the bin that still need adjusting
+	 */
+	public int getNumNeedsAdjustment() {
+		return mNumNeedsAdjustment;
+	}
+	
+	/**
+	 * @param listener gets told about changes to any of the parts in this bin
+	 */
+	public void addPartChangeListener(PartChangeListener listener) {
+		mListeners.add(listener);
+	}
+	
+	public void removePartChangeListener(PartChangeListener listener) {
+		mListeners.remove(listener);
+	}
+	
+	private void firePartChanged(Part part, Part.PartProperty property, Object oldValue, Object newValue) {
+		mNumNeedsAdjustment += adjustmentDelta(part, property, oldValue);
+		for (PartChangeListener listener: mListeners) {
+			listener.partChanged(part, property, oldValue, newValue);
+		}
+	}
+	
 	public FileTime getFileTime() {
 		return mFileTime;
 	}
@@ -55,8 +122,41 @@ public class Bin {
 		return mParts;
 	}
 	
+	/**
+	 * Finds a part by part number, ignoring case, without walking the whole part list
+	 * @param partNumber the part number to look for
+	 * @return the index of the first part with that part number, or -1 if there isn't one
+	 */
+	public int indexOfPart(String partNumber) {
+		
+		// The part list isn't supposed to change after the bin is made, but if it ever does we'll just rebuild the index
+		if (mPartIndex == null || mPartIndex.size() > mParts.size()) {
+			mPartIndex = new HashMap<>(mParts.size() * 2);
+			for (int i = 0; i < mParts.size(); i++) {
+				mPartIndex.putIfAbsent(indexKey(mParts.get(i).getPartNumber()), i);
+			}
+		}
+		
+		Integer index = mPartIndex.get(indexKey(partNumber));
+		if (index == null || index >= mParts.size() || !mParts.get(index).getPartNumber().equalsIgnoreCase(partNumber))
+			return -1;
+		return index;
+		
+	}
+	
+	static String indexKey(String str) {
+		return str.toLowerCase(Locale.ROOT);
+	}
+	
 	public boolean isDone() {
-		return mParts.stream().noneMatch(Part::needsAdjustment);
+		return mNumNeedsAdjustment == 0;
+	}
+	
+	/**
+	 * @return +1 if the change made the part need adjusting, -1 if it made it stop needing adjusting, otherwise 0
+	 */
+	static int adjustmentDelta(Part part, Part.PartProperty property, Object oldValue) {
+		return (part.needsAdjustment() ? 1 : 0) - (part.neededAdjustmentBefore(property, oldValue) ? 1 : 0);
 	}
 	
 	@Override
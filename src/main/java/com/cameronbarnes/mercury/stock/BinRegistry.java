@@ -0,0 +1,309 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.stock;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds the bins for a session, indexed by bin number (and optionally warehouse) so that finding a duplicate bin doesn't mean scanning every bin we have.
+ * It also keeps a list of the bins sorted by bin number for the UI, which is kept in order as bins are added instead of being sorted over and over again
+ */
+public class BinRegistry {
+
+	private static final Comparator<Bin> ORDER = Comparator.comparing(Bin::getBinNum);
+
+	private final boolean mKeyByWarehouse;
+	private final HashMap<String, Bin> mBinsByKey = new HashMap<>();
+	private final ArrayList<Bin> mOrderedBins = new ArrayList<>();
+	// What we hand out, so nothing outside the registry can change the list without the indexes and counters knowing about it
+	private final List<Bin> mOrderedView = Collections.unmodifiableList(mOrderedBins);
+	// Bin number, lower case, to the bins with that number, so a scanned bin number can be found without checking every bin. There's only more than one if we're keyed by warehouse
+	private final HashMap<String, List<Bin>> mBinsByNumber = new HashMap<>();
+	private final CopyOnWriteArrayList<PartChangeListener> mListeners = new CopyOnWriteArrayList<>();
+	// Every bin in the registry gets this one listener, which passes the change along to the registry's own listeners
+	private final PartChangeListener mForwarder = this::firePartChanged;
+	// Bumped every time a bin is added, replaced, or removed, so we know when the search index is out of date
+	private int mModCount;
+	// Totals across every bin, so progress for the whole session doesn't mean looking at every part
+	private int mNumParts;
+	private int mNumNeedsAdjustment;
+	private PartSearchIndex mSearchIndex;
+	private int mSearchIndexModCount;
+
+	public BinRegistry() {
+		this(false);
+	}
+
+	/**
+	 * @param keyByWarehouse true if two bins with the same bin number but different warehouses should be treated as different bins
+	 */
+	public BinRegistry(boolean keyByWarehouse) {
+		mKeyByWarehouse = keyByWarehouse;
+	}
+
+	/**
+	 * Creates a registry holding the provided bins, if there are duplicates only the newest is kept
+	 * @param bins the bins to add
+	 * @param keyByWarehouse true if two bins with the same bin number but different warehouses should be treated as different bins
+	 */
+	public BinRegistry(Collection<Bin> bins, boolean keyByWarehouse) {
+		this(keyByWarehouse);
+		bins.forEach(this::putIfNewer);
+	}
+
+	private String keyOf(String binNum, String warehouse) {
+		return mKeyByWarehouse ? binNum + '\u0000' + warehouse : binNum;
+	}
+
+	private String keyOf(Bin bin) {
+		return keyOf(bin.getBinNum(), bin.getWarehouse());
+	}
+
+	/**
+	 * Adds the bin, if there's already a bin with the same key we only keep the newer of the two based on their file times.
+	 * If either bin doesn't have a file time the existing bin is kept
+	 * @param bin the bin to add
+	 * @return true if the bin was added, false if it was discarded in favour of the existing one
+	 */
+	public boolean putIfNewer(Bin bin) {
+
+		String key = keyOf(bin);
+		Bin old = mBinsByKey.get(key);
+
+		if (old != null) {
+			if (old.getFileTime() == null || bin.getFileTime() == null || old.getFileTime().compareTo(bin.getFileTime()) >= 0)
+				return false;
+			mOrderedBins.remove(indexOf(old));
+			unindexNumber(old);
+			removed(old);
+			old.removePartChangeListener(mForwarder);
+		}
+
+		mBinsByKey.put(key, bin);
+		insertOrdered(bin);
+		indexNumber(bin);
+		added(bin);
+		mModCount++;
+		bin.addPartChangeListener(mForwarder);
+		return true;
+
+	}
+
+	/**
+	 * Adds the bin, replacing any existing bin with the same key regardless of which is newer
+	 * @param bin the bin to add
+	 */
+	public void put(Bin bin) {
+
+		Bin old = mBinsByKey.put(keyOf(bin), bin);
+		if (old != null) {
+			mOrderedBins.remove(indexOf(old));
+			unindexNumber(old);
+			removed(old);
+			old.removePartChangeListener(mForwarder);
+		}
+		insertOrdered(bin);
+		indexNumber(bin);
+		added(bin);
+		mModCount++;
+		bin.addPartChangeListener(mForwarder);
+
+	}
+
+	/**
+	 * @param bin the bin to remove
+	 * @return true if the bin was in the registry
+	 */
+	public boolean remove(Bin bin) {
+
+		String key = keyOf(bin);
+		if (mBinsByKey.get(key) != bin)
+			return false;
+
+		mBinsByKey.remove(key);
+		mOrderedBins.remove(indexOf(bin));
+		unindexNumber(bin);
+		removed(bin);
+		bin.removePartChangeListener(mForwarder);
+		mModCount++;
+		return true;
+
+	}
+
+	/**
+	 * @param binNum the bin number to look for
+	 * @param warehouse the warehouse the bin is in, this is ignored if the registry isn't keyed by warehouse
+	 * @return an Optional containing the bin if there is one
+	 */
+	public Optional<Bin> get(String binNum, String warehouse) {
+		return Optional.ofNullable(mBinsByKey.get(keyOf(binNum, warehouse)));
+	}
+
+	public boolean contains(String binNum, String warehouse) {
+		return mBinsByKey.containsKey(keyOf(binNum, warehouse));
+	}
+
+	/**
+	 * Finds where a bin is in the ordered list by its bin number, ignoring case. This is for bin numbers that have been scanned in, where we don't know the warehouse
+	 * @param binNum the bin number to look for
+	 * @return the index in the ordered list of a bin with that bin number, or -1 if there isn't one
+	 */
+	public int indexOfBinNumber(String binNum) {
+
+		List<Bin> bins = mBinsByNumber.get(Bin.indexKey(binNum));
+		return bins == null ? -1 : indexOf(bins.get(0));
+
+	}
+
+	/**
+	 * A search index over every part in the registry. It's built the first time it's asked for and rebuilt the next time it's asked for after the bins change,
+	 * so adding a pile of bins during ingest doesn't rebuild it over and over
+	 * @return the search index for the bins currently in the registry
+	 */
+	public PartSearchIndex getSearchIndex() {
+
+		if (mSearchIndex == null || mSearchIndexModCount != mModCount) {
+			mSearchIndex = new PartSearchIndex(mOrderedBins);
+			mSearchIndexModCount = mModCount;
+		}
+		return mSearchIndex;
+
+	}
+
+	/**
+	 * The bins in order of bin number. This is the list the UI reads from, it follows along as bins are added and removed but it can't be changed directly,
+	 * bins have to be added or removed through the registry so the indexes and counters stay correct
+	 * @return a read only view of the ordered list of bins
+	 */
+	public List<Bin> getOrderedBins() {
+		return mOrderedView;
+	}
+
+	public int size() {
+		return mOrderedBins.size();
+	}
+
+	public boolean isEmpty() {
+		return mOrderedBins.isEmpty();
+	}
+
+	public boolean isKeyedByWarehouse() {
+		return mKeyByWarehouse;
+	}
+
+	/**
+	 * @param listener gets told about changes to any part in any of the bins in the registry, bins added later included
+	 */
+	public void addPartChangeListener(PartChangeListener listener) {
+		mListeners.add(listener);
+	}
+
+	public void removePartChangeListener(PartChangeListener listener) {
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * @return the number of parts in all the bins
+	 */
+	public int getNumParts() {
+		return mNumParts;
+	}
+
+	/**
+	 * @return the number of parts in all the bins that still need adjusting
+	 */
+	public int getNumNeedsAdjustment() {
+		return mNumNeedsAdjustment;
+	}
+
+	private void added(Bin bin) {
+		mNumParts += bin.getParts().size();
+		mNumNeedsAdjustment += bin.getNumNeedsAdjustment();
+	}
+
+	private void removed(Bin bin) {
+		mNumParts -= bin.getParts().size();
+		mNumNeedsAdjustment -= bin.getNumNeedsAdjustment();
+	}
+
+	private void firePartChanged(Part part, Part.PartProperty property, Object oldValue, Object newValue) {
+		mNumNeedsAdjustment += Bin.adjustmentDelta(part, property, oldValue);
+		for (PartChangeListener listener: mListeners) {
+			listener.partChanged(part, property, oldValue, newValue);
+		}
+	}
+
+	private void indexNumber(Bin bin) {
+		mBinsByNumber.computeIfAbsent(Bin.indexKey(bin.getBinNum()), key -> new ArrayList<>(1)).add(bin);
+	}
+
+	private void unindexNumber(Bin bin) {
+
+		String key = Bin.indexKey(bin.getBinNum());
+		List<Bin> bins = mBinsByNumber.get(key);
+		if (bins == null)
+			return;
+		bins.removeIf(b -> b == bin); // Bin.equals compares contents, we want this exact bin
+		if (bins.isEmpty())
+			mBinsByNumber.remove(key);
+
+	}
+
+	/**
+	 * Inserts the bin into the ordered list after any bins with the same bin number, same as adding it to the end and doing a stable sort
+	 */
+	private void insertOrdered(Bin bin) {
+
+		int index = Collections.binarySearch(mOrderedBins, bin, ORDER);
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			while (index < mOrderedBins.size() && ORDER.compare(mOrderedBins.get(index), bin) == 0) {
+				index++;
+			}
+		}
+		mOrderedBins.add(index, bin);
+
+	}
+
+	/**
+	 * Finds the position of this exact bin object in the ordered list
+	 * @param bin the bin to look for
+	 * @return the index of the bin in the ordered list, or -1 if it isn't in the registry
+	 */
+	public int indexOf(Bin bin) {
+
+		int index = Collections.binarySearch(mOrderedBins, bin, ORDER);
+		if (index < 0)
+			return -1;
+
+		// There can be more than one bin with the same bin number if we're keyed by warehouse, so we need to look either side of where the search landed
+		while (index > 0 && ORDER.compare(mOrderedBins.get(index - 1), bin) == 0) {
+			index--;
+		}
+		for (; index < mOrderedBins.size() && ORDER.compare(mOrderedBins.get(index), bin) == 0; index++) {
+			if (mOrderedBins.get(index) == bin)
+				return index;
+		}
+
+		return -1;
+
+	}
+
+}
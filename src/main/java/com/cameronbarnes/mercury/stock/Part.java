@@ -19,6 +19,8 @@ package com.cameronbarnes.mercury.stock;
 
 import com.cameronbarnes.mercury.core.IUnprotectedOptions;
 
+import java.util.Objects;
+
 public class Part {
 	
 	private final String mPartNumber;
@@ -34,6 +36,9 @@ public class Part {
 	
 	private String mComments;
 	
+	// This is set by the bin the part belongs to, it's transient so it doesn't end up in the saved json
+	private transient PartChangeListener mChangeListener;
+	
 	public Part(String partNumber, String partDescription, String warehouse, String binNum, int physicalQuantity, int allocatedQuantity, int freeQuantity, double cost) {
 		mPartDescription = partDescription;
 		mPartNumber = partNumber;
@@ -50,11 +55,15 @@ public class Part {
 	}
 	
 	public void setAdjustment(int adjustment) {
+		int old = mAdjustment;
 		mAdjustment = adjustment;
+		fireChanged(PartProperty.ADJUSTMENT, old, adjustment);
 	}
 	
 	public void setCountedQuantity(int counted) {
+		int old = mCountedQuantity;
 		mCountedQuantity = counted;
+		fireChanged(PartProperty.COUNTED_QUANTITY, old, counted);
 	}
 	
 	public String getPartNumber() {
@@ -75,7 +84,9 @@ public class Part {
 	
 	public void setPhysicalQuantity(int physicalQuantity, IUnprotectedOptions options) {
 		if (options.isAllowedWritePhysicalQuantity()) {
+			int old = mPhysicalQuantity;
 			mPhysicalQuantity = physicalQuantity;
+			fireChanged(PartProperty.PHYSICAL_QUANTITY, old, physicalQuantity);
 		}
 	}
 	
@@ -103,11 +114,28 @@ public class Part {
 		return mPhysicalQuantity + mAdjustment != mCountedQuantity;
 	}
 	
+	/**
+	 * Works out if the part needed adjustment before a change, from the value the changed property had before. This lets the bin keep its count of parts
+	 * needing adjustment up to date without having to remember the state of every part
+	 * @param property the property that changed
+	 * @param oldValue the value it had before the change
+	 * @return true if the part needed adjustment before the change
+	 */
+	boolean neededAdjustmentBefore(PartProperty property, Object oldValue) {
+		return switch (property) {
+			case PHYSICAL_QUANTITY -> (Integer) oldValue + mAdjustment != mCountedQuantity;
+			case ADJUSTMENT -> mPhysicalQuantity + (Integer) oldValue != mCountedQuantity;
+			case COUNTED_QUANTITY -> mPhysicalQuantity + mAdjustment != (Integer) oldValue;
+			default -> needsAdjustment();
+		};
+	}
+	
 	public boolean autoAdjustment(IUnprotectedOptions options) {
 		
 		if (options.isAllowedAutoAdjustment() && mCountedQuantity > 0) {
 			int startAdjust = mAdjustment;
 			mAdjustment = mCountedQuantity - mPhysicalQuantity;
+			fireChanged(PartProperty.ADJUSTMENT, startAdjust, mAdjustment);
 			return mAdjustment != startAdjust;
 		}
 		
@@ -124,7 +152,40 @@ public class Part {
 	}
 	
 	public void setComments(String comments) {
+		String old = getComments();
 		mComments = comments;
+		fireChanged(PartProperty.COMMENTS, old, getComments());
+	}
+	
+	/**
+	 * Puts back the values a user can change, this is for loading saved progress so it skips the options check and doesn't tell the listener about it
+	 */
+	public void restore(int physicalQuantity, int countedQuantity, int adjustment, String comments) {
+		mPhysicalQuantity = physicalQuantity;
+		mCountedQuantity = countedQuantity;
+		mAdjustment = adjustment;
+		mComments = comments;
+	}
+	
+	/**
+	 * @return a new part with all the same values, which nothing else is holding on to, so it can be read from another thread while this one keeps changing
+	 */
+	public Part copy() {
+		Part part = new Part(mPartNumber, mPartDescription, mWarehouse, mBinNum, mPhysicalQuantity, mAllocatedQuantity, mFreeQuantity, mCost);
+		part.restore(mPhysicalQuantity, mCountedQuantity, mAdjustment, mComments);
+		return part;
+	}
+	
+	/**
+	 * @param listener the listener to tell about changes to this part, or null to stop telling anyone. A part only has the one listener, which is its bin
+	 */
+	void setChangeListener(PartChangeListener listener) {
+		mChangeListener = listener;
+	}
+	
+	private void fireChanged(PartProperty property, Object oldValue, Object newValue) {
+		if (mChangeListener != null && !Objects.equals(oldValue, newValue))
+			mChangeListener.partChanged(this, property, oldValue, newValue);
 	}
 	
 	@Override
@@ -0,0 +1,35 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.stock;
+
+/**
+ * Gets told whenever one of the values a user can change on a part is changed, so that things like the autosave can keep up without having to go looking for changes
+ */
+@FunctionalInterface
+public interface PartChangeListener {
+	
+	/**
+	 * Called after the value has been changed, this is only called if the new value is actually different from the old one
+	 * @param part the part that was changed
+	 * @param property which value was changed
+	 * @param oldValue the value before the change
+	 * @param newValue the value after the change
+	 */
+	void partChanged(Part part, Part.PartProperty property, Object oldValue, Object newValue);
+	
+}
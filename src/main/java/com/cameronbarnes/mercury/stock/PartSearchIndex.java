@@ -0,0 +1,234 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.stock;
+
+import java.util.*;
+
+/**
+ * A search index over every part in every bin of a session, so a scanned part number or a bit of a description can be found without walking every part.
+ * Part numbers are looked up exactly (ignoring case) through a hash map. Descriptions and part numbers are searched through a trigram index when the
+ * search is at least three characters long, and through a sorted list of words for anything shorter, where we match on the start of a word instead.
+ * Part numbers and descriptions can't change once a part is made, so the index never needs updating, it only needs rebuilding when the bins change
+ */
+public final class PartSearchIndex {
+	
+	private static final int GRAM = 3;
+	
+	/**
+	 * Where a part is
+	 * @param bin the bin the part is in
+	 * @param row the index of the part in the bin's part list
+	 */
+	public record PartLocation(Bin bin, int row) {
+		
+		public Part part() {
+			return bin.getParts().get(row);
+		}
+		
+	}
+	
+	private final ArrayList<PartLocation> mLocations = new ArrayList<>();
+	private final ArrayList<String> mTexts = new ArrayList<>(); // The lower case text that's searched for each location, by id
+	private final HashMap<String, Postings> mByPartNumber = new HashMap<>();
+	private final HashMap<String, Postings> mTrigrams = new HashMap<>();
+	private final String[] mWords;
+	private final int[] mWordIds;
+	
+	/**
+	 * Builds the index, this walks every part once
+	 * @param bins the bins to index
+	 */
+	public PartSearchIndex(Collection<Bin> bins) {
+		
+		ArrayList<WordEntry> words = new ArrayList<>();
+		
+		for (Bin bin: bins) {
+			List<Part> parts = bin.getParts();
+			for (int row = 0; row < parts.size(); row++) {
+				
+				Part part = parts.get(row);
+				int id = mLocations.size();
+				mLocations.add(new PartLocation(bin, row));
+				
+				String partNumber = Bin.indexKey(part.getPartNumber());
+				String text = partNumber + ' ' + Bin.indexKey(part.getPartDescription());
+				mTexts.add(text);
+				
+				mByPartNumber.computeIfAbsent(partNumber, key -> new Postings()).add(id);
+				for (int i = 0; i + GRAM <= text.length(); i++) {
+					mTrigrams.computeIfAbsent(text.substring(i, i + GRAM), key -> new Postings()).add(id);
+				}
+				for (String word: text.split("[^\\p{L}\\p{N}]+")) {
+					if (!word.isEmpty())
+						words.add(new WordEntry(word, id));
+				}
+				
+			}
+		}
+		
+		words.sort(Comparator.comparing(WordEntry::word).thenComparingInt(WordEntry::id));
+		mWords = new String[words.size()];
+		mWordIds = new int[words.size()];
+		for (int i = 0; i < words.size(); i++) {
+			mWords[i] = words.get(i).word();
+			mWordIds[i] = words.get(i).id();
+		}
+		
+	}
+	
+	public int size() {
+		return mLocations.size();
+	}
+	
+	/**
+	 * @param partNumber the part number to look for, case doesn't matter
+	 * @return every place a part with that part number is, in bin order
+	 */
+	public List<PartLocation> findPartNumber(String partNumber) {
+		
+		Postings postings = mByPartNumber.get(Bin.indexKey(partNumber));
+		if (postings == null)
+			return List.of();
+		
+		ArrayList<PartLocation> found = new ArrayList<>(postings.mSize);
+		for (int i = 0; i < postings.mSize; i++) {
+			found.add(mLocations.get(postings.mIds[i]));
+		}
+		return found;
+		
+	}
+	
+	/**
+	 * Searches part numbers and descriptions. Exact part number matches come first, then everything else in bin order
+	 * @param query the text to look for, case doesn't matter
+	 * @param limit the most results to return
+	 * @return the matching parts
+	 */
+	public List<PartLocation> search(String query, int limit) {
+		
+		String q = Bin.indexKey(query.trim());
+		if (q.isEmpty() || limit <= 0)
+			return List.of();
+		
+		LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+		Postings exact = mByPartNumber.get(q);
+		if (exact != null) {
+			for (int i = 0; i < exact.mSize && ids.size() < limit; i++) {
+				ids.add(exact.mIds[i]);
+			}
+		}
+		
+		if (q.length() >= GRAM) {
+			searchTrigrams(q, ids, limit);
+		} else {
+			searchWordPrefix(q, ids, limit);
+		}
+		
+		ArrayList<PartLocation> found = new ArrayList<>(ids.size());
+		ids.forEach(id -> found.add(mLocations.get(id)));
+		return found;
+		
+	}
+	
+	/**
+	 * Intersects the posting lists for every trigram in the query, starting from the shortest, and then checks the text of what's left
+	 * since having all the trigrams doesn't mean they're in the right order
+	 */
+	private void searchTrigrams(String q, Set<Integer> ids, int limit) {
+		
+		ArrayList<Postings> lists = new ArrayList<>();
+		HashSet<String> seen = new HashSet<>();
+		for (int i = 0; i + GRAM <= q.length(); i++) {
+			String gram = q.substring(i, i + GRAM);
+			if (!seen.add(gram))
+				continue;
+			Postings postings = mTrigrams.get(gram);
+			if (postings == null)
+				return;
+			lists.add(postings);
+		}
+		lists.sort(Comparator.comparingInt(postings -> postings.mSize));
+		
+		Postings smallest = lists.get(0);
+		for (int i = 0; i < smallest.mSize && ids.size() < limit; i++) {
+			int id = smallest.mIds[i];
+			boolean all = true;
+			for (int j = 1; j < lists.size() && all; j++) {
+				all = lists.get(j).contains(id);
+			}
+			if (all && mTexts.get(id).contains(q))
+				ids.add(id);
+		}
+		
+	}
+	
+	/**
+	 * Finds every word that starts with the query using a binary search over the sorted words, for queries too short to have a trigram
+	 */
+	private void searchWordPrefix(String q, Set<Integer> ids, int limit) {
+		
+		int index = Arrays.binarySearch(mWords, q);
+		if (index < 0)
+			index = -index - 1;
+		// The same word can be in the list more than once, so step back to the first of them
+		while (index > 0 && mWords[index - 1].startsWith(q)) {
+			index--;
+		}
+		
+		TreeSet<Integer> matches = new TreeSet<>();
+		for (; index < mWords.length && mWords[index].startsWith(q); index++) {
+			matches.add(mWordIds[index]);
+		}
+		for (int id: matches) {
+			if (ids.size() >= limit)
+				break;
+			ids.add(id);
+		}
+		
+	}
+	
+	private record WordEntry(String word, int id) {
+	}
+	
+	/**
+	 * A growable list of part ids, always in increasing order since parts are added in order, so it can be binary searched
+	 */
+	private static final class Postings {
+		
+		private int[] mIds = new int[2];
+		private int mSize;
+		
+		void add(int id) {
+			
+			// The same trigram can show up more than once in one part's text
+			if (mSize > 0 && mIds[mSize - 1] == id)
+				return;
+			if (mSize == mIds.length)
+				mIds = Arrays.copyOf(mIds, mSize * 2);
+			mIds[mSize++] = id;
+			
+		}
+		
+		boolean contains(int id) {
+			return Arrays.binarySearch(mIds, 0, mSize, id) >= 0;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,348 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Saves all the bins of a session into a single binary file, instead of a json file per bin. The layout is:
+ * a header (magic number and version), a string dictionary so repeated values like the warehouse and bin number are only stored once,
+ * an index with the position, length and CRC32 of each bin so a single bin can be read without reading the rest, the bins themselves, and a CRC32 of the whole file at the end.
+ * Numbers are written as fixed width big endian ints, longs and doubles. Strings are UTF-8 with an int length in front, and each one is only stored once, in the dictionary.
+ * Everywhere else, the index and the parts, a string is an int index into the dictionary, with NO_STRING (-1) for a part with no comments
+ */
+public final class BinarySnapshot {
+	
+	public static final String FILE_NAME = "session.bin";
+	
+	private static final int MAGIC = 0x4D534E50; // MSNP
+	private static final byte VERSION = 1;
+	private static final int NO_STRING = -1;
+	
+	private BinarySnapshot() {
+	}
+	
+	/**
+	 * An entry in the snapshot's index
+	 * @param binNum the bin number
+	 * @param warehouse the warehouse the bin is in
+	 * @param offset where the bin starts, counting from the end of the index
+	 * @param length how many bytes the bin takes up
+	 * @param crc the CRC32 of the bin's bytes
+	 */
+	public record IndexEntry(String binNum, String warehouse, long offset, int length, int crc) {
+	}
+	
+	/**
+	 * Writes the bins to the file, the file is written next to where it's going first and then moved over it, so a crash part way through doesn't wreck an existing snapshot
+	 * @param bins the bins to save
+	 * @param file the file to save to
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(List<Bin> bins, File file) throws IOException {
+		
+		LinkedHashMap<String, Integer> dictionary = new LinkedHashMap<>();
+		
+		// First the bins themselves, so we know where each one starts and how big it is for the index
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		ByteArrayOutputStream binBytes = new ByteArrayOutputStream();
+		DataOutputStream bodyOut = new DataOutputStream(binBytes);
+		ArrayList<IndexEntry> index = new ArrayList<>(bins.size());
+		CRC32 crc = new CRC32();
+		
+		for (Bin bin: bins) {
+			
+			binBytes.reset();
+			bodyOut.writeInt(bin.getParts().size());
+			for (Part part: bin.getParts()) {
+				bodyOut.writeInt(intern(dictionary, part.getPartNumber()));
+				bodyOut.writeInt(intern(dictionary, part.getPartDescription()));
+				bodyOut.writeInt(intern(dictionary, part.getWarehouse()));
+				bodyOut.writeInt(intern(dictionary, part.getBinNum()));
+				bodyOut.writeInt(part.getPhysicalQuantity());
+				bodyOut.writeInt(part.getAllocatedQuantity());
+				bodyOut.writeInt(part.getFreeQuantity());
+				bodyOut.writeDouble(part.getCost());
+				bodyOut.writeInt(part.getCountedQuantity());
+				bodyOut.writeInt(part.getAdjustment());
+				bodyOut.writeInt(part.hasComments() ? intern(dictionary, part.getComments()) : NO_STRING);
+			}
+			bodyOut.flush();
+			
+			byte[] bytes = binBytes.toByteArray();
+			crc.reset();
+			crc.update(bytes);
+			index.add(new IndexEntry(bin.getBinNum(), bin.getWarehouse(), body.size(), bytes.length, (int) crc.getValue()));
+			body.write(bytes);
+			intern(dictionary, bin.getBinNum());
+			intern(dictionary, bin.getWarehouse());
+			
+		}
+		
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(header);
+		
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		
+		out.writeInt(dictionary.size());
+		for (String str: dictionary.keySet()) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		
+		out.writeInt(index.size());
+		for (IndexEntry entry: index) {
+			out.writeInt(dictionary.get(entry.binNum()));
+			out.writeInt(dictionary.get(entry.warehouse()));
+			out.writeLong(entry.offset());
+			out.writeInt(entry.length());
+			out.writeInt(entry.crc());
+		}
+		out.flush();
+		
+		// The checksum at the end covers everything before it
+		crc.reset();
+		crc.update(header.toByteArray());
+		crc.update(body.toByteArray());
+		
+		File dir = file.getAbsoluteFile().getParentFile();
+		File tmp = new File(dir, file.getName() + ".tmp");
+		try (FileOutputStream fileOut = new FileOutputStream(tmp)) {
+			OutputStream bufferedOut = new BufferedOutputStream(fileOut);
+			header.writeTo(bufferedOut);
+			body.writeTo(bufferedOut);
+			bufferedOut.write(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+			bufferedOut.flush();
+			// The move is only safe once the new snapshot is actually on the disk, otherwise a power cut can leave us with the name pointing at an empty file
+			fileOut.getFD().sync();
+		}
+		
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory(dir);
+		
+	}
+	
+	/**
+	 * Makes sure a rename in the directory is on the disk, so callers can rely on the new snapshot being there once write returns, like the autosave emptying its log
+	 * Windows doesn't let you open a directory to sync it, so there we can only skip it and rely on the file system journaling the rename
+	 * @param dir the directory to sync
+	 * @throws IOException if the directory could be opened but not synced
+	 */
+	private static void syncDirectory(File dir) throws IOException {
+		
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+		}
+		catch (IOException e) {
+			return;
+		}
+		try (channel) {
+			channel.force(true);
+		}
+		
+	}
+	
+	/**
+	 * Reads all the bins from a snapshot
+	 * @param file the snapshot file
+	 * @return an Optional with the bins in the order they were saved, or an empty Optional if the file isn't a snapshot or fails its checksum
+	 */
+	public static Optional<ArrayList<Bin>> read(File file) {
+		return read(file, () -> {});
+	}
+	
+	/**
+	 * Reads all the bins from a snapshot, the bins are decoded in parallel since the index tells us exactly where each one starts
+	 * @param file the snapshot file
+	 * @param onBinRead called once for each bin as it's decoded, this can be called from any thread
+	 * @return an Optional with the bins in the order they were saved, or an empty Optional if the file isn't a snapshot or fails its checksum
+	 */
+	public static Optional<ArrayList<Bin>> read(File file, Runnable onBinRead) {
+		
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(file.toPath());
+		}
+		catch (IOException e) { // TODO handle this with the HomeAPI
+			e.printStackTrace();
+			return Optional.empty();
+		}
+		
+		if (bytes.length < Integer.BYTES * 4 + 1)
+			return Optional.empty();
+		
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - Integer.BYTES);
+		if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).getInt()) {
+			System.out.println("Debug: " + file + " failed its checksum");
+			return Optional.empty();
+		}
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Integer.BYTES))) {
+			
+			Header header = readHeader(in);
+			int bodyStart = (int) header.bodyStart();
+			// toList keeps the bins in the same order as the index
+			List<Bin> bins = header.index().parallelStream().map(entry -> {
+				try (DataInputStream binIn = new DataInputStream(new ByteArrayInputStream(bytes, bodyStart + (int) entry.offset(), entry.length()))) {
+					Bin bin = readBin(binIn, entry, header.dictionary());
+					onBinRead.run();
+					return bin;
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).toList();
+			return Optional.of(new ArrayList<>(bins));
+			
+		}
+		catch (IOException | RuntimeException e) {
+			System.out.println("Debug: " + file + " isn't a snapshot we can read");
+			return Optional.empty();
+		}
+		
+	}
+	
+	/**
+	 * Reads just the index of a snapshot, which is enough to list the bins without reading any of their parts
+	 * @param file the snapshot file
+	 * @return the index entries in the order the bins were saved
+	 * @throws IOException if the file can't be read or isn't a snapshot
+	 */
+	public static List<IndexEntry> readIndex(File file) throws IOException {
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return readHeader(in).index();
+		}
+		
+	}
+	
+	/**
+	 * Reads a single bin out of a snapshot without reading the others, the bin is checked against its own checksum in the index
+	 * @param file the snapshot file
+	 * @param binNum the bin number of the bin to read
+	 * @return an Optional with the bin, or an empty Optional if it isn't in the snapshot or fails its checksum
+	 * @throws IOException if the file can't be read or isn't a snapshot
+	 */
+	public static Optional<Bin> readBin(File file, String binNum) throws IOException {
+		
+		Header header;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			header = readHeader(in);
+		}
+		
+		Optional<IndexEntry> entry = header.index().stream().filter(e -> e.binNum().equals(binNum)).findFirst();
+		if (entry.isEmpty())
+			return Optional.empty();
+		
+		ByteBuffer buffer = ByteBuffer.allocate(entry.get().length());
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long position = header.bodyStart() + entry.get().offset();
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0)
+					throw new EOFException("Snapshot ended part way through bin " + binNum);
+			}
+		}
+		
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array());
+		if ((int) crc.getValue() != entry.get().crc())
+			return Optional.empty();
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()))) {
+			return Optional.of(readBin(in, entry.get(), header.dictionary()));
+		}
+		
+	}
+	
+	private record Header(String[] dictionary, List<IndexEntry> index, long bodyStart) {
+	}
+	
+	private static Header readHeader(DataInputStream in) throws IOException {
+		
+		if (in.readInt() != MAGIC || in.readByte() != VERSION)
+			throw new IOException("Not a snapshot file");
+		long position = Integer.BYTES + 1;
+		
+		String[] dictionary = new String[in.readInt()];
+		position += Integer.BYTES;
+		for (int i = 0; i < dictionary.length; i++) {
+			int length = in.readInt();
+			dictionary[i] = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+			position += Integer.BYTES + length;
+		}
+		
+		int numBins = in.readInt();
+		position += Integer.BYTES;
+		ArrayList<IndexEntry> index = new ArrayList<>(numBins);
+		for (int i = 0; i < numBins; i++) {
+			index.add(new IndexEntry(dictionary[in.readInt()], dictionary[in.readInt()], in.readLong(), in.readInt(), in.readInt()));
+			position += Integer.BYTES * 4 + Long.BYTES;
+		}
+		
+		return new Header(dictionary, index, position);
+		
+	}
+	
+	private static Bin readBin(DataInputStream in, IndexEntry entry, String[] dictionary) throws IOException {
+		
+		int numParts = in.readInt();
+		ArrayList<Part> parts = new ArrayList<>(numParts);
+		for (int i = 0; i < numParts; i++) {
+			
+			Part part = new Part(
+					dictionary[in.readInt()], // PartNumber
+					dictionary[in.readInt()], // PartDescription
+					dictionary[in.readInt()], // WareHouse
+					dictionary[in.readInt()], // Bin
+					in.readInt(), // PhysicalQty
+					in.readInt(), // AllocatedQty
+					in.readInt(), // FreeQty
+					in.readDouble() // Cost
+			);
+			int counted = in.readInt();
+			int adjustment = in.readInt();
+			int comments = in.readInt();
+			part.restore(part.getPhysicalQuantity(), counted, adjustment, comments == NO_STRING ? null : dictionary[comments]);
+			parts.add(part);
+			
+		}
+		
+		return new Bin(entry.binNum(), entry.warehouse(), parts, null);
+		
+	}
+	
+	private static int intern(Map<String, Integer> dictionary, String str) {
+		return dictionary.computeIfAbsent(str, key -> dictionary.size());
+	}
+	
+}
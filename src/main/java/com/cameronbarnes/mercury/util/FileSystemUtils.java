@@ -17,9 +17,11 @@
 
 package com.cameronbarnes.mercury.util;
 
+import com.cameronbarnes.mercury.core.AutoSave;
 import com.cameronbarnes.mercury.core.Main;
 import com.cameronbarnes.mercury.core.Options;
 import com.cameronbarnes.mercury.core.SavedOngoing;
+import com.cameronbarnes.mercury.core.SessionManifest;
 import com.cameronbarnes.mercury.stock.Bin;
 
 import javax.swing.*;
@@ -214,22 +216,34 @@ public final class FileSystemUtils {
 	
 	}
 	
-	public static void saveOngoing(List<Bin> bins) {
-		saveOngoing(bins, new File(Options.SAVED_ONGOING_FOLDER.getPath() + File.separator + Date.from(Instant.now()).toString().replace(":", "-")));
+	public static boolean saveOngoing(List<Bin> bins) {
+		return saveOngoing(bins, new File(Options.SAVED_ONGOING_FOLDER.getPath() + File.separator + Date.from(Instant.now()).toString().replace(":", "-")));
 	}
 	
+	/**
+	 * Saves the bins and the stockstatus files in the process folder so the count can be resumed later
+	 * All the bins go in one snapshot, so if that can't be written there's nothing to resume, the save directory is deleted and the stockstatus files are left in the process folder
+	 * @param bins the bins to save
+	 * @param outDir the directory to save to
+	 * @return true if the session was saved
+	 */
 	@SuppressWarnings("ResultOfMethodCallIgnored")
-	public static void saveOngoing(List<Bin> bins, File outDir) {
+	public static boolean saveOngoing(List<Bin> bins, File outDir) {
 		
 		//Create all the files for dirs we will need
 		outDir.mkdirs();
 		File stockstatusDir = new File(outDir.getAbsolutePath() + File.separator + "stockstatus");
 		stockstatusDir.mkdirs();
-		File binsDir = new File(outDir.getAbsolutePath() + File.separator + "bins");
-		binsDir.mkdirs();
 		
-		//Write out all the parts from bins into json files
-		bins.forEach(bin -> writeStringToFile(SerializationUtils.serializeBin(bin), new File(binsDir.getAbsolutePath() + File.separator + bin.getBinNum())));
+		//Write out all the bins into a single snapshot file
+		try {
+			BinarySnapshot.write(bins, new File(outDir, BinarySnapshot.FILE_NAME));
+		}
+		catch (IOException e) {
+			e.printStackTrace(); // TODO handle this with the HomeAPI
+			deleteDir(outDir);
+			return false;
+		}
 		
 		// Move all the stockstatus files into a folder with the save
 		Arrays.stream(Objects.requireNonNull(Options.PROCESS_FOLDER.listFiles())).dropWhile(File::isDirectory).forEach(file -> {
@@ -241,44 +255,116 @@ public final class FileSystemUtils {
 			}
 		});
 		
+		writeManifest(bins, outDir);
+		return true;
+		
+	}
+	
+	/**
+	 * Writes the manifest for a saved session, this needs to happen after the stockstatus files have been moved into the save so the count is right
+	 * @param bins the bins in the session
+	 * @param saveDir the directory the session is saved in
+	 */
+	public static void writeManifest(List<Bin> bins, File saveDir) {
+		
+		File[] stockstatus = new File(saveDir, "stockstatus").listFiles();
+		int numFiles = stockstatus == null ? 0 : (int) Arrays.stream(stockstatus).filter(File::isFile).count();
+		writeStringToFile(SerializationUtils.serializeManifest(SessionManifest.of(bins, numFiles)), new File(saveDir, SessionManifest.FILE_NAME));
+		
 	}
 	
 	/**
-	 * Checks to see if there are any saved sessions. Technically it's only counting the number of files in the folder that's supposed to hold saved sessions
+	 * Checks to see if there are any saved sessions. Technically it's only counting the number of files in the folder that's supposed to hold saved sessions, not counting autosaves
 	 * @return true if we think there is a saved session in the SAVED_ONGOING_FOLDER folder
 	 */
 	public static boolean hasSavedSessions() {
-		return Objects.requireNonNull(Options.SAVED_ONGOING_FOLDER.listFiles()).length > 0;
+		return Arrays.stream(Objects.requireNonNull(Options.SAVED_ONGOING_FOLDER.listFiles())).anyMatch(file -> !isAutoSave(file));
 	}
 	
 	/**
 	 * Gets a List of SavedOngoing objects from the SAVED_ONGOING_FOLDER folder so that we can list them and allow the user to resume a previous count
+	 * Autosaves are left out, the only one that should be in there while we're running is the running session's own, a crashed one is picked up when we start
 	 * @return A List of all the SavedOngoing sessions from the  SAVED_ONGOING_FOLDER
 	 */
 	public static List<SavedOngoing> getSavedSessions() {
 		
 		ArrayList<SavedOngoing> savedSessions = new ArrayList<>();
 		Arrays.stream(Objects.requireNonNull(Options.SAVED_ONGOING_FOLDER.listFiles()))
-		      .filter(File::isDirectory).map(FileSystemUtils::getSavedSessionFromDir).filter(Optional::isPresent).map(Optional::get).forEach(savedSessions::add);
+		      .filter(File::isDirectory).filter(dir -> !isAutoSave(dir)).map(FileSystemUtils::getSavedSessionSummaryFromDir).filter(Optional::isPresent).map(Optional::get).forEach(savedSessions::add);
 		return savedSessions;
 		
 	}
 	
+	private static boolean isAutoSave(File file) {
+		return file.getName().endsWith(AutoSave.AUTOSAVE_SUFFIX);
+	}
+	
+	/**
+	 * Reads just enough of a saved session to list it. If the session has a manifest the bins aren't loaded until they're needed,
+	 * otherwise it was saved before we wrote manifests and we have to load the whole thing
+	 * @param dir the saved session directory
+	 * @return an Optional with the saved session, or an empty Optional if the directory isn't a saved session
+	 */
+	public static Optional<SavedOngoing> getSavedSessionSummaryFromDir(File dir) {
+		
+		if (!new File(dir, "stockstatus").isDirectory())
+			return Optional.empty();
+		
+		Optional<SessionManifest> manifest = readStringFromFile(new File(dir, SessionManifest.FILE_NAME)).flatMap(SerializationUtils::deserializeManifest);
+		if (manifest.isPresent() && !manifest.get().bins().isEmpty())
+			return Optional.of(new SavedOngoing(dir, manifest.get()));
+		
+		return getSavedSessionFromDir(dir);
+		
+	}
+	
 	public static Optional<SavedOngoing> getSavedSessionFromDir(File dir) {
+		return readSessionBins(dir).map(bins -> new SavedOngoing(dir, bins));
+	}
+	
+	/**
+	 * Loads all the bins from a saved session directory
+	 * @param dir the saved session directory
+	 * @return an Optional with the bins, or an empty Optional if the directory isn't a saved session or doesn't have any bins in it
+	 */
+	public static Optional<ArrayList<Bin>> readSessionBins(File dir) {
+		return readSessionBins(dir, () -> {});
+	}
+	
+	/**
+	 * Loads all the bins from a saved session directory, reading the bins in parallel
+	 * @param dir the saved session directory
+	 * @param onBinRead called once for each bin as it's read, this can be called from any thread
+	 * @return an Optional with the bins, or an empty Optional if the directory isn't a saved session or doesn't have any bins in it
+	 */
+	public static Optional<ArrayList<Bin>> readSessionBins(File dir, Runnable onBinRead) {
+		
+		if (!dir.exists() || !dir.isDirectory())
+			return Optional.empty();
+		
+		File snapshot = new File(dir, BinarySnapshot.FILE_NAME);
+		File binsDir = new File(dir, "bins");
 		
-		// Require tha the provided directory exists,  contains a stockstatus directory, and contains a bins directory
-		if (dir.exists() && Arrays.stream(Objects.requireNonNull(dir.listFiles())).anyMatch(file -> file.getName().equals("stockstatus")) &&
-				    Arrays.stream(Objects.requireNonNull(dir.listFiles())).anyMatch(file -> file.getName().equals("bins"))) {
+		// Require that the provided directory contains a stockstatus directory, and either a snapshot file or a bins directory from before we had snapshots
+		if (new File(dir, "stockstatus").isDirectory() && (snapshot.isFile() || binsDir.isDirectory())) {
 			
 			ArrayList<Bin> bins = new ArrayList<>();
 			
-			// Get all files in the bins subdirectory, exclude directories, read the contents of each file as a string, deserialize from string to bin, add the valid bins to the array
-			Arrays.stream(Objects.requireNonNull(new File(dir.getAbsolutePath() + "/bins").listFiles()))
-			      .dropWhile(File::isDirectory).map(FileSystemUtils::readStringFromFile)
-			      .filter(Optional::isPresent).map(Optional::get).map(SerializationUtils::deserializeBin).filter(Optional::isPresent).map(Optional::get).forEach(bins::add);
+			Optional<ArrayList<Bin>> fromSnapshot = snapshot.isFile() ? BinarySnapshot.read(snapshot, onBinRead) : Optional.empty();
+			if (fromSnapshot.isPresent()) {
+				bins = fromSnapshot.get();
+			} else if (binsDir.isDirectory()) {
+				// Get all files in the bins subdirectory, exclude directories, read the contents of each file as a string, deserialize from string to bin, add the valid bins to the array
+				Arrays.stream(Objects.requireNonNull(binsDir.listFiles())).parallel()
+				      .dropWhile(File::isDirectory).map(FileSystemUtils::readStringFromFile).peek(str -> onBinRead.run())
+				      .filter(Optional::isPresent).map(Optional::get).map(SerializationUtils::deserializeBin).filter(Optional::isPresent).map(Optional::get).forEachOrdered(bins::add);
+			}
+			
+			// If this is an autosave there may be edits in the write ahead log that haven't made it into the bin files yet
+			AutoSave.replayLog(dir, bins);
 			
 			if (!bins.isEmpty())
-				return Optional.of(new SavedOngoing(dir, bins));
+				return Optional.of(bins);
 			
 		}
 		
@@ -287,6 +373,15 @@ public final class FileSystemUtils {
 	}
 	
 	public static void moveFilesFromSavedSession(SavedOngoing savedOngoing) {
+		moveFilesFromSavedSession(savedOngoing, () -> {});
+	}
+	
+	/**
+	 * Moves the stockstatus files from a saved session back to the process folder and then deletes the saved session
+	 * @param savedOngoing the saved session
+	 * @param onFileMoved called after each file is moved
+	 */
+	public static void moveFilesFromSavedSession(SavedOngoing savedOngoing, Runnable onFileMoved) {
 		
 		// We'll move all the stockstatus files from the saved data to the process folder
 		Arrays.stream(Objects.requireNonNull(new File(savedOngoing.getSaveDir().getAbsolutePath() + File.separator + "stockstatus").listFiles())).dropWhile(File::isDirectory).forEach(file -> {
@@ -296,6 +391,7 @@ public final class FileSystemUtils {
 			catch (IOException e) {
 				e.printStackTrace();
 			}
+			onFileMoved.run();
 		});
 		
 		deleteDir(savedOngoing.getSaveDir());
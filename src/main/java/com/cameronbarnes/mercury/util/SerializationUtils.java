@@ -19,11 +19,18 @@ package com.cameronbarnes.mercury.util;
 
 import com.cameronbarnes.mercury.core.Main;
 import com.cameronbarnes.mercury.core.Options;
+import com.cameronbarnes.mercury.core.SessionManifest;
 import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,17 +38,25 @@ import java.util.Optional;
 
 public class SerializationUtils {
 	
+	// Gson instances are thread safe and expensive to build, so we only ever make these once
+	private static final Gson GSON = new Gson();
+	private static final Gson VERSION_GSON = new GsonBuilder().registerTypeAdapter(Main.Version.class, new VersionDeserializer()).create();
+	private static final Gson STOCK_GSON = new GsonBuilder().serializeNulls()
+			                                       .registerTypeAdapter(Part.class, new PartAdapter().nullSafe())
+			                                       .registerTypeAdapter(Bin.class, new BinAdapter().nullSafe())
+			                                       .create();
+	private static final Type PART_LIST_TYPE = new TypeToken<ArrayList<Part>>() {
+	}.getType();
+	
 	public static String serializeOptions(Options options) {
 		
-		return new Gson().toJson(options);
+		return GSON.toJson(options);
 	}
 	
 	public static Optional<Options> deserializeOptions(String str) {
 		
 		try {
-			Gson gson = new Gson();
-			Options options = gson.fromJson(str, Options.class);
-			options.generateFont();
+			Options options = GSON.fromJson(str, Options.class);
 			options.ensureAllNewPropertiesArePresent();
 			return Optional.of(options);
 		}
@@ -53,61 +68,238 @@ public class SerializationUtils {
 	
 	public static String serializeVersion(Main.Version version) {
 		
-		return new Gson().toJson(version);
+		return GSON.toJson(version);
 	}
 	
 	public static Optional<Main.Version> deserializeVersion(String str) {
 		
 		if (str == null || str.isBlank())
 			return Optional.empty();
-		GsonBuilder builder = new GsonBuilder();
-		builder.registerTypeAdapter(Main.Version.class, new VersionDeserializer());
-		Gson gson = builder.create();
-		return Optional.ofNullable(gson.fromJson(str, Main.Version.class));
+		return Optional.ofNullable(VERSION_GSON.fromJson(str, Main.Version.class));
+		
+	}
+	
+	public static String serializeManifest(SessionManifest manifest) {
+		
+		return GSON.toJson(manifest);
+	}
+	
+	public static Optional<SessionManifest> deserializeManifest(String str) {
+		
+		try {
+			SessionManifest manifest = GSON.fromJson(str, SessionManifest.class);
+			if (manifest == null || manifest.bins() == null)
+				return Optional.empty();
+			return Optional.of(manifest);
+		}
+		catch (JsonParseException e) {
+			System.out.println("Debug: Failed to read a session manifest: " + e.getMessage());
+			return Optional.empty();
+		}
 		
 	}
 	
 	public static String serializePartList(List<Part> parts) {
 		
-		Gson gson = new GsonBuilder().serializeNulls().create();
-		return gson.toJson(parts);
+		return STOCK_GSON.toJson(parts, PART_LIST_TYPE);
 	}
 	
 	public static String serializeBin(Bin bin) {
 		
-		JsonObject json = new JsonObject();
-		json.addProperty("BinNumber", bin.getBinNum());
-		json.addProperty("WareHouse", bin.getWarehouse());
-		json.addProperty("Parts", serializePartList(bin.getParts()));
+		return STOCK_GSON.toJson(bin, Bin.class);
+	}
+	
+	/**
+	 * Writes the bin straight out to the writer as it goes, without building the whole json string in memory first
+	 * @param bin the bin to write
+	 * @param writer where to write it, this isn't closed
+	 * @throws IOException if the writer throws
+	 */
+	public static void serializeBin(Bin bin, Appendable writer) throws IOException {
 		
-		return json.toString();
+		try {
+			STOCK_GSON.toJson(bin, Bin.class, writer);
+		}
+		catch (JsonIOException e) {
+			throw new IOException(e);
+		}
 		
 	}
 	
 	public static List<Part> deserializePartList(String str) {
 		
-		Type type = new TypeToken<ArrayList<Part>>() {
-		}.getType();
-		return new Gson().fromJson(str, type);
+		return STOCK_GSON.fromJson(str, PART_LIST_TYPE);
 		
 	}
 	
 	public static Optional<Bin> deserializeBin(String bin) {
-		return Optional.ofNullable(new GsonBuilder().registerTypeAdapter(Bin.class, new BinDeserializer()).create().fromJson(bin, Bin.class));
+		return deserializeBin(new StringReader(bin));
 	}
 	
-	private static final class BinDeserializer implements JsonDeserializer<Bin> {
+	/**
+	 * Reads a bin from the reader a token at a time. This reads both the current format, where the parts are a nested array,
+	 * and the old format where the parts were serialized to a json string and then stored as a string property of the bin
+	 * @param reader the json to read, this isn't closed
+	 * @return an Optional with the bin, or an empty Optional if the json isn't a valid bin
+	 */
+	public static Optional<Bin> deserializeBin(Reader reader) {
+		
+		try {
+			return Optional.ofNullable(STOCK_GSON.fromJson(reader, Bin.class));
+		}
+		catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+			System.out.println("Debug: Failed to read a saved bin: " + e.getMessage());
+			return Optional.empty();
+		}
+		
+	}
+	
+	/**
+	 * Writes a bin as {"BinNumber": "", "WareHouse": "", "Parts": [...]}, with the parts as a normal nested array instead of a json string inside the json
+	 */
+	private static final class BinAdapter extends TypeAdapter<Bin> {
+		
+		private static final String BIN_NUMBER = "BinNumber";
+		private static final String WAREHOUSE = "WareHouse";
+		private static final String PARTS = "Parts";
+		
+		private final PartAdapter mPartAdapter = new PartAdapter();
 		
 		@Override
-		public Bin deserialize(JsonElement jsonElement, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-			JsonObject jsonObject = jsonElement.getAsJsonObject();
-			return new Bin(jsonObject.get("BinNumber").getAsString(), jsonObject.get("WareHouse").getAsString(), deserializePartList(jsonObject.get("Parts").getAsString()), null);
+		public void write(JsonWriter out, Bin bin) throws IOException {
+			
+			out.beginObject();
+			out.name(BIN_NUMBER).value(bin.getBinNum());
+			out.name(WAREHOUSE).value(bin.getWarehouse());
+			out.name(PARTS).beginArray();
+			for (Part part: bin.getParts()) {
+				mPartAdapter.write(out, part);
+			}
+			out.endArray();
+			out.endObject();
+			
+		}
+		
+		@Override
+		public Bin read(JsonReader in) throws IOException {
+			
+			String binNum = null;
+			String warehouse = null;
+			List<Part> parts = null;
+			
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case BIN_NUMBER -> binNum = in.nextString();
+					case WAREHOUSE -> warehouse = in.nextString();
+					case PARTS -> parts = readParts(in);
+					default -> in.skipValue();
+				}
+			}
+			in.endObject();
+			
+			if (binNum == null || warehouse == null || parts == null)
+				throw new JsonParseException("Bin is missing its bin number, warehouse, or parts");
+			
+			return new Bin(binNum, warehouse, parts, null);
+			
+		}
+		
+		private List<Part> readParts(JsonReader in) throws IOException {
+			
+			// Saves from older versions have the part list as a json string, so that string needs parsing again
+			if (in.peek() == JsonToken.STRING) {
+				try (JsonReader legacy = new JsonReader(new StringReader(in.nextString()))) {
+					return readPartArray(legacy);
+				}
+			}
+			return readPartArray(in);
+			
+		}
+		
+		private List<Part> readPartArray(JsonReader in) throws IOException {
+			
+			ArrayList<Part> parts = new ArrayList<>();
+			in.beginArray();
+			while (in.hasNext()) {
+				parts.add(mPartAdapter.read(in));
+			}
+			in.endArray();
+			return parts;
+			
 		}
 		
 	}
 	
-	private static final class VersionDeserializer implements JsonDeserializer<Main.Version> {
+	/**
+	 * Reads and writes parts using the same property names Gson gave them when it was doing this with reflection, so part json from older saves still reads fine
+	 */
+	private static final class PartAdapter extends TypeAdapter<Part> {
 		
+		@Override
+		public void write(JsonWriter out, Part part) throws IOException {
+			
+			out.beginObject();
+			out.name("mPartNumber").value(part.getPartNumber());
+			out.name("mPartDescription").value(part.getPartDescription());
+			out.name("mWarehouse").value(part.getWarehouse());
+			out.name("mBinNum").value(part.getBinNum());
+			out.name("mPhysicalQuantity").value(part.getPhysicalQuantity());
+			out.name("mCountedQuantity").value(part.getCountedQuantity());
+			out.name("mAdjustment").value(part.getAdjustment());
+			out.name("mAllocatedQuantity").value(part.getAllocatedQuantity());
+			out.name("mFreeQuantity").value(part.getFreeQuantity());
+			out.name("mCost").value(part.getCost());
+			out.name("mComments");
+			if (part.hasComments()) {
+				out.value(part.getComments());
+			} else {
+				out.nullValue();
+			}
+			out.endObject();
+			
+		}
+		
+		@Override
+		public Part read(JsonReader in) throws IOException {
+			
+			String partNumber = null, description = null, warehouse = null, binNum = null, comments = null;
+			int physical = 0, counted = 0, adjustment = 0, allocated = 0, free = 0;
+			double cost = 0;
+			
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+				switch (name) {
+					case "mPartNumber" -> partNumber = in.nextString();
+					case "mPartDescription" -> description = in.nextString();
+					case "mWarehouse" -> warehouse = in.nextString();
+					case "mBinNum" -> binNum = in.nextString();
+					case "mPhysicalQuantity" -> physical = in.nextInt();
+					case "mCountedQuantity" -> counted = in.nextInt();
+					case "mAdjustment" -> adjustment = in.nextInt();
+					case "mAllocatedQuantity" -> allocated = in.nextInt();
+					case "mFreeQuantity" -> free = in.nextInt();
+					case "mCost" -> cost = in.nextDouble();
+					case "mComments" -> comments = in.nextString();
+					default -> in.skipValue();
+				}
+			}
+			in.endObject();
+			
+			Part part = new Part(partNumber, description, warehouse, binNum, physical, allocated, free, cost);
+			part.restore(physical, counted, adjustment, comments);
+			return part;
+			
+		}
+		
+	}
+	
+	private static final class VersionDeserializer implements JsonDeserializer<Main.Version> {
 		@Override
 		public Main.Version deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
 			
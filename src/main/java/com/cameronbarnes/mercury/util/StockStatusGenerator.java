@@ -0,0 +1,504 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.stock.Part;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Writes stockstatus files in the same layouts we get them from the ERP, so the importer can be tested, benchmarked, and soak tested against files that look like the real thing.
+ * It can write out a list of parts we already have, or generate a whole corpus of bins, including bins exported more than once and rows the importer should throw away.
+ * It can be run on its own to make a corpus, run it with no arguments to see how
+ */
+public final class StockStatusGenerator {
+	
+	/**
+	 * The titles of the 14 columns in a stockstatus file, in order
+	 */
+	public static final String[] TITLES = {"PartNumber", "PartDescription", "WareHouse", "Bin", "PhysicalQty", "AllocatedQty", "FreeQty", "Cost",
+			"OnOrder", "BackOrder", "LastReceived", "LastIssued", "LastMonthConsumed", "Last3MonthConsumed"};
+	
+	private static final String[] WAREHOUSES = {"301-Good Parts", "302-Bad Parts", "303-Returns", "304-Overflow", "305-Receiving"};
+	private static final String[] DESCRIPTION_WORDS = {"BOLT", "NUT", "WASHER", "HEX", "SOCKET", "CAP", "SCREW", "M6", "M8", "M10", "ZINC", "STAINLESS",
+			"BEARING", "SEAL", "GASKET", "O-RING", "FILTER", "HOSE", "CLAMP", "FITTING", "VALVE", "BRACKET", "SPRING", "PIN", "BUSHING", "ASSY", "KIT", "COVER"};
+	private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+	
+	// There are this many possible bin numbers in the AAAA-0000 format, each bin index maps to a different one
+	private static final long NUM_BIN_NUMBERS = 26L * 26 * 26 * 26 * 10000;
+	// Coprime with NUM_BIN_NUMBERS, so stepping through the bin numbers with it visits every one of them once without the bins all coming out as AAAA-0001, AAAA-0002...
+	private static final long BIN_NUMBER_STRIDE = 7919;
+	
+	/**
+	 * The formats we can write, a real Excel workbook, or the UTF-16LE html file CSS8 exports and calls a xls file
+	 */
+	public enum Format {
+		XLSX(".xlsx"),
+		HTM(".xls");
+		
+		private final String mExtension;
+		
+		Format(String extension) {
+			mExtension = extension;
+		}
+		
+		/**
+		 * @return the file extension a file in this format would normally have
+		 */
+		public String getExtension() {
+			return mExtension;
+		}
+	}
+	
+	/**
+	 * What a generated corpus should look like
+	 * @param numBins how many different bins to generate, each gets its own file
+	 * @param minPartsPerBin the fewest parts a bin can have, at least 1 so every bin imports
+	 * @param maxPartsPerBin the most parts a bin can have
+	 * @param duplicateBinRate the chance of a bin being exported a second time, the second file is newer so it's the one the importer should keep
+	 * @param malformedRowRate the chance of a row the importer should skip being written before each part
+	 * @param htmRate the chance of a file being written as a CSS8 html file instead of a real workbook
+	 * @param seed the same seed and settings always make the same files
+	 */
+	public record Settings(int numBins, int minPartsPerBin, int maxPartsPerBin, double duplicateBinRate, double malformedRowRate, double htmRate, long seed) {
+		
+		public static final Settings DEFAULT = new Settings(100, 5, 200, 0.05, 0.01, 0.5, 0);
+		
+		public Settings {
+			if (numBins < 0 || numBins > NUM_BIN_NUMBERS)
+				throw new IllegalArgumentException("The number of bins must be between 0 and " + NUM_BIN_NUMBERS);
+			if (minPartsPerBin < 1 || maxPartsPerBin < minPartsPerBin)
+				throw new IllegalArgumentException("Every bin needs at least one part, and the most parts can't be less than the fewest");
+			if (!isRate(duplicateBinRate) || !isRate(malformedRowRate) || !isRate(htmRate))
+				throw new IllegalArgumentException("Rates have to be between 0 and 1");
+		}
+		
+		private static boolean isRate(double rate) {
+			return rate >= 0 && rate <= 1;
+		}
+		
+		public Settings withNumBins(int numBins) {
+			return new Settings(numBins, minPartsPerBin, maxPartsPerBin, duplicateBinRate, malformedRowRate, htmRate, seed);
+		}
+		
+		public Settings withSeed(long seed) {
+			return new Settings(numBins, minPartsPerBin, maxPartsPerBin, duplicateBinRate, malformedRowRate, htmRate, seed);
+		}
+		
+	}
+	
+	/**
+	 * What was generated, so a test can check the importer got everything it should have
+	 * @param numFiles the number of files written, duplicates included
+	 * @param numBins the number of different bins
+	 * @param numParts the number of valid part rows across the bins, not counting the duplicate files
+	 * @param numMalformedRows the number of rows written that the importer should skip, not counting the title rows
+	 * @param numBytes the total size of the files written
+	 */
+	public record Summary(int numFiles, int numBins, long numParts, long numMalformedRows, long numBytes) {
+	}
+	
+	private StockStatusGenerator() {
+	}
+	
+	/**
+	 * Writes the parts to a single stockstatus file, including the title row
+	 * @param parts the parts to write, these should all be in the same bin
+	 * @param file the file to write to
+	 * @param format the format to write the file in
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeStockStatusFile(List<Part> parts, File file, Format format) throws IOException {
+		
+		Object[] cells = new Object[TITLES.length];
+		try (RowWriter writer = open(file, format)) {
+			for (Part part: parts) {
+				cells[0] = part.getPartNumber();
+				cells[1] = part.getPartDescription();
+				cells[2] = part.getWarehouse();
+				cells[3] = part.getBinNum();
+				cells[4] = part.getPhysicalQuantity();
+				cells[5] = part.getAllocatedQuantity();
+				cells[6] = part.getFreeQuantity();
+				cells[7] = part.getCost();
+				for (int i = 8; i < TITLES.length; i++) {
+					cells[i] = 0;
+				}
+				writer.writeRow(cells, cells.length);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Generates a whole corpus of stockstatus files, writing the bins in parallel
+	 * @param settings what the corpus should look like
+	 * @param outDir where to write the files, this is made if it doesn't exist
+	 * @param onBinWritten called once for each bin after its files are written, this can be called from any thread
+	 * @return a summary of what was written
+	 * @throws IOException if any of the files can't be written
+	 */
+	public static Summary generate(Settings settings, File outDir, Runnable onBinWritten) throws IOException {
+		
+		if (!outDir.isDirectory() && !outDir.mkdirs())
+			throw new IOException("Couldn't make the output directory " + outDir);
+		
+		AtomicInteger numFiles = new AtomicInteger();
+		AtomicLong numParts = new AtomicLong();
+		AtomicLong numMalformedRows = new AtomicLong();
+		AtomicLong numBytes = new AtomicLong();
+		
+		try {
+			IntStream.range(0, settings.numBins()).parallel().forEach(i -> {
+				try {
+					
+					// Everything about a bin comes from its own seed, so the files don't depend on which thread got to them first
+					long binSeed = settings.seed() * 0x9E3779B97F4A7C15L + i;
+					Random random = new Random(binSeed);
+					String binNum = binNumber(settings.seed(), i);
+					Format format = random.nextDouble() < settings.htmRate() ? Format.HTM : Format.XLSX;
+					boolean duplicate = random.nextDouble() < settings.duplicateBinRate();
+					
+					File file = new File(outDir, "stockstatus_" + binNum + format.getExtension());
+					long[] counts = writeBin(settings, binSeed, binNum, file, format);
+					numParts.addAndGet(counts[0]);
+					numMalformedRows.addAndGet(counts[1]);
+					numBytes.addAndGet(file.length());
+					numFiles.incrementAndGet();
+					
+					if (duplicate) {
+						// The same bin exported again later, the importer should keep this one over the first
+						File again = new File(outDir, "stockstatus_" + binNum + "_2" + format.getExtension());
+						counts = writeBin(settings, binSeed, binNum, again, format);
+						numMalformedRows.addAndGet(counts[1]);
+						numBytes.addAndGet(again.length());
+						numFiles.incrementAndGet();
+						FileTime later = FileTime.fromMillis(file.lastModified() + 60000);
+						Files.getFileAttributeView(again.toPath(), BasicFileAttributeView.class).setTimes(later, null, later);
+					}
+					
+					onBinWritten.run();
+					
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		
+		return new Summary(numFiles.get(), settings.numBins(), numParts.get(), numMalformedRows.get(), numBytes.get());
+		
+	}
+	
+	/**
+	 * Writes one bin's file, rows are made as they're written so a bin with a huge number of parts doesn't need to fit in memory
+	 * @return the number of parts, and the number of malformed rows written
+	 */
+	private static long[] writeBin(Settings settings, long binSeed, String binNum, File file, Format format) throws IOException {
+		
+		Random random = new Random(binSeed);
+		String warehouse = WAREHOUSES[random.nextInt(WAREHOUSES.length)];
+		int numParts = settings.minPartsPerBin() + random.nextInt(settings.maxPartsPerBin() - settings.minPartsPerBin() + 1);
+		long numMalformed = 0;
+		
+		Object[] cells = new Object[TITLES.length];
+		StringBuilder builder = new StringBuilder(64);
+		try (RowWriter writer = open(file, format)) {
+			for (int i = 0; i < numParts; i++) {
+				
+				if (random.nextDouble() < settings.malformedRowRate()) {
+					fillPart(random, builder, cells, binNum, warehouse);
+					numMalformed++;
+					if (random.nextBoolean()) {
+						writer.writeRow(cells, cells.length - 1); // A cell short
+					} else {
+						cells[4] = "N/A"; // Text where the physical quantity should be
+						writer.writeRow(cells, cells.length);
+					}
+				}
+				
+				fillPart(random, builder, cells, binNum, warehouse);
+				writer.writeRow(cells, cells.length);
+				
+			}
+		}
+		
+		return new long[]{numParts, numMalformed};
+		
+	}
+	
+	private static void fillPart(Random random, StringBuilder builder, Object[] cells, String binNum, String warehouse) {
+		
+		builder.setLength(0);
+		appendRandom(random, builder, 4).append('.');
+		appendRandom(random, builder, 5).append('.');
+		appendRandom(random, builder, 3);
+		cells[0] = builder.toString();
+		
+		builder.setLength(0);
+		int words = 2 + random.nextInt(5);
+		for (int i = 0; i < words; i++) {
+			if (i > 0)
+				builder.append(' ');
+			builder.append(DESCRIPTION_WORDS[random.nextInt(DESCRIPTION_WORDS.length)]);
+		}
+		cells[1] = builder.toString();
+		
+		int physical = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(500);
+		int allocated = physical == 0 ? 0 : random.nextInt(physical + 1);
+		cells[2] = warehouse;
+		cells[3] = binNum;
+		cells[4] = physical;
+		cells[5] = allocated;
+		cells[6] = physical - allocated;
+		cells[7] = Math.round(random.nextDouble() * 50000) / 100.0;
+		cells[8] = random.nextInt(4) == 0 ? random.nextInt(100) : 0; // OnOrder
+		cells[9] = random.nextInt(20) == 0 ? random.nextInt(20) : 0; // BackOrder
+		cells[10] = 44000 + random.nextInt(1500); // LastReceived, as an Excel date
+		cells[11] = 44000 + random.nextInt(1500); // LastIssued, as an Excel date
+		cells[12] = random.nextInt(50); // LastMonthConsumed
+		cells[13] = random.nextInt(150); // Last3MonthConsumed
+		
+	}
+	
+	private static StringBuilder appendRandom(Random random, StringBuilder builder, int length) {
+		for (int i = 0; i < length; i++) {
+			builder.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
+		}
+		return builder;
+	}
+	
+	/**
+	 * @return a bin number in the AAAA-0000 format that's different for every index, given the same seed
+	 */
+	static String binNumber(long seed, long index) {
+		
+		long n = Math.floorMod(Math.floorMod(seed, NUM_BIN_NUMBERS) + index * BIN_NUMBER_STRIDE, NUM_BIN_NUMBERS);
+		char[] chars = new char[9];
+		long letters = n / 10000;
+		for (int i = 3; i >= 0; i--) {
+			chars[i] = (char) ('A' + letters % 26);
+			letters /= 26;
+		}
+		chars[4] = '-';
+		long digits = n % 10000;
+		for (int i = 8; i >= 5; i--) {
+			chars[i] = (char) ('0' + digits % 10);
+			digits /= 10;
+		}
+		return new String(chars);
+		
+	}
+	
+	private static RowWriter open(File file, Format format) throws IOException {
+		return switch (format) {
+			case XLSX -> new XlsxRowWriter(file);
+			case HTM -> new HtmRowWriter(file);
+		};
+	}
+	
+	/**
+	 * Writes rows to a stockstatus file, starting with the title row. Numbers are written as numbers where the format has a difference, everything else as text
+	 */
+	private interface RowWriter extends Closeable {
+		void writeRow(Object[] cells, int numCells) throws IOException;
+	}
+	
+	private static final class XlsxRowWriter implements RowWriter {
+		
+		private final File mFile;
+		// The streaming workbook means a big bin doesn't have to be held in memory all at once
+		private final SXSSFWorkbook mWorkbook = new SXSSFWorkbook(100);
+		private final Sheet mSheet = mWorkbook.createSheet();
+		private int mNextRow;
+		
+		XlsxRowWriter(File file) {
+			mFile = file;
+			Row header = mSheet.createRow(mNextRow++);
+			for (int i = 0; i < TITLES.length; i++) {
+				header.createCell(i).setCellValue(TITLES[i]);
+			}
+		}
+		
+		@Override
+		public void writeRow(Object[] cells, int numCells) {
+			
+			Row row = mSheet.createRow(mNextRow++);
+			for (int i = 0; i < numCells; i++) {
+				if (cells[i] instanceof Number number)
+					row.createCell(i).setCellValue(number.doubleValue());
+				else
+					row.createCell(i).setCellValue(String.valueOf(cells[i]));
+			}
+			
+		}
+		
+		@Override
+		public void close() throws IOException {
+			
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(mFile))) {
+				mWorkbook.write(out);
+			}
+			finally {
+				mWorkbook.dispose();
+				mWorkbook.close();
+			}
+			
+		}
+		
+	}
+	
+	private static final class HtmRowWriter implements RowWriter {
+		
+		private final Writer mWriter;
+		
+		HtmRowWriter(File file) throws IOException {
+			
+			mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_16LE));
+			mWriter.write('\uFEFF'); // CSS8 starts these with a byte order mark
+			mWriter.write("<html><body><table>\r\n<tr>");
+			for (String title: TITLES) {
+				mWriter.write("<td><b>");
+				mWriter.write(title);
+				mWriter.write("</b></td>");
+			}
+			mWriter.write("</tr>\r\n");
+			
+		}
+		
+		@Override
+		public void writeRow(Object[] cells, int numCells) throws IOException {
+			
+			mWriter.write("<tr>");
+			for (int i = 0; i < numCells; i++) {
+				mWriter.write("<td>");
+				mWriter.write(String.valueOf(cells[i]));
+				mWriter.write("</td>");
+			}
+			mWriter.write("</tr>\r\n");
+			
+		}
+		
+		@Override
+		public void close() throws IOException {
+			
+			try {
+				mWriter.write("</table></body></html>\r\n");
+			}
+			finally {
+				mWriter.close();
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Makes a corpus of stockstatus files from the command line, for load and soak testing the importer
+	 */
+	public static void main(String[] args) {
+		
+		if (args.length == 0 || args[0].startsWith("--")) {
+			printUsage();
+			System.exit(1);
+			return;
+		}
+		
+		File outDir = new File(args[0]);
+		Settings defaults = Settings.DEFAULT.withSeed(System.nanoTime());
+		int numBins = defaults.numBins();
+		int minParts = defaults.minPartsPerBin();
+		int maxParts = defaults.maxPartsPerBin();
+		double duplicates = defaults.duplicateBinRate();
+		double malformed = defaults.malformedRowRate();
+		double htm = defaults.htmRate();
+		long seed = defaults.seed();
+		
+		Settings settings;
+		try {
+			for (int i = 1; i < args.length; i += 2) {
+				if (i + 1 >= args.length)
+					throw new IllegalArgumentException("Missing a value for " + args[i]);
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--bins" -> numBins = Integer.parseInt(value);
+					case "--parts" -> {
+						String[] range = value.split("-", 2);
+						minParts = Integer.parseInt(range[0]);
+						maxParts = range.length > 1 ? Integer.parseInt(range[1]) : minParts;
+					}
+					case "--duplicates" -> duplicates = Double.parseDouble(value);
+					case "--malformed" -> malformed = Double.parseDouble(value);
+					case "--htm" -> htm = Double.parseDouble(value);
+					case "--seed" -> seed = Long.parseLong(value);
+					default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			settings = new Settings(numBins, minParts, maxParts, duplicates, malformed, htm, seed);
+		}
+		catch (IllegalArgumentException e) { // NumberFormatException is one of these too
+			System.err.println(e.getMessage());
+			printUsage();
+			System.exit(1);
+			return;
+		}
+		
+		System.out.println("Generating " + settings.numBins() + " bins in " + outDir.getAbsolutePath() + " with seed " + settings.seed());
+		AtomicInteger written = new AtomicInteger();
+		int every = Math.max(1, settings.numBins() / 100);
+		long start = System.nanoTime();
+		
+		try {
+			Summary summary = generate(settings, outDir, () -> {
+				int n = written.incrementAndGet();
+				if (n % every == 0)
+					System.out.println(n + " / " + settings.numBins() + " bins written");
+			});
+			System.out.printf("Wrote %d files, %d bins, %d parts, %d malformed rows, %.1f MB in %.1f seconds%n", summary.numFiles(), summary.numBins(),
+					summary.numParts(), summary.numMalformedRows(), summary.numBytes() / 1048576.0, (System.nanoTime() - start) / 1e9);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		
+	}
+	
+	private static void printUsage() {
+		System.err.println("Usage: StockStatusGenerator <output dir> [--bins N] [--parts MIN-MAX] [--duplicates RATE] [--malformed RATE] [--htm RATE] [--seed N]");
+		System.err.println("Defaults: --bins " + Settings.DEFAULT.numBins() + " --parts " + Settings.DEFAULT.minPartsPerBin() + "-" + Settings.DEFAULT.maxPartsPerBin()
+				+ " --duplicates " + Settings.DEFAULT.duplicateBinRate() + " --malformed " + Settings.DEFAULT.malformedRowRate() + " --htm " + Settings.DEFAULT.htmRate()
+				+ " and a random seed");
+	}
+	
+}
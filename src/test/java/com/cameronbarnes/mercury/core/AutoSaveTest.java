@@ -0,0 +1,213 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.BinRegistry;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutoSaveTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testJournalAndSnapshot() throws IOException {
+		
+		BinRegistry registry = new BinRegistry(DebugUtils.generateTestBinData(5), false);
+		AutoSave autoSave = new AutoSave(mTempDir);
+		autoSave.track(registry);
+		autoSave.save(); // The first save after tracking new bins is a full snapshot
+		
+		File[] dirs = Objects.requireNonNull(mTempDir.listFiles());
+		assertEquals(1, dirs.length);
+		File saveDir = dirs[0];
+		
+		Bin bin = registry.getOrderedBins().stream().filter(b -> !b.isEmpty()).findFirst().orElseThrow();
+		Part part = bin.getParts().get(0);
+		part.setCountedQuantity(999);
+		part.setComments("Changed after the snapshot");
+		autoSave.flush();
+		File log = new File(saveDir, WriteAheadLog.FILE_NAME);
+		assertEquals(2, WriteAheadLog.read(log).size());
+		
+		// The snapshot still has the old values, so these have to come from the log
+		Optional<SavedOngoing> saved = FileSystemUtils.getSavedSessionFromDir(saveDir);
+		assertTrue(saved.isPresent());
+		assertEquals(registry.size(), saved.get().getBins().size());
+		Part loaded = findPart(saved.get(), bin, part);
+		assertEquals(999, loaded.getCountedQuantity());
+		assertEquals("Changed after the snapshot", loaded.getComments());
+		
+		autoSave.compact();
+		assertTrue(WriteAheadLog.read(log).isEmpty());
+		saved = FileSystemUtils.getSavedSessionFromDir(saveDir);
+		assertTrue(saved.isPresent());
+		assertEquals(999, findPart(saved.get(), bin, part).getCountedQuantity());
+		
+		autoSave.discard();
+		assertFalse(saveDir.exists());
+		
+		// Once it's discarded it shouldn't be listening anymore
+		part.setCountedQuantity(5);
+		autoSave.flush();
+		assertEquals(0, Objects.requireNonNull(mTempDir.listFiles()).length);
+		
+		System.out.println("AutoSave log and snapshot PASSED");
+		
+	}
+	
+	@Test
+	public void testEditsDuringCompaction() throws Exception {
+		
+		BinRegistry registry = new BinRegistry(DebugUtils.generateTestBinData(20), false);
+		AutoSave autoSave = new AutoSave(mTempDir);
+		autoSave.track(registry);
+		autoSave.save();
+		
+		// Snapshots get taken over and over on another thread while the EDT keeps changing the parts, none of the edits should go missing
+		Thread compacting = new Thread(() -> {
+			for (int i = 0; i < 20; i++) {
+				try {
+					autoSave.compact();
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+		compacting.start();
+		for (int round = 0; round < 50; round++) {
+			int value = round;
+			SwingUtilities.invokeAndWait(() -> {
+				for (Bin bin: registry.getOrderedBins()) {
+					for (Part part: bin.getParts()) {
+						part.setCountedQuantity(value + part.getPhysicalQuantity());
+					}
+				}
+			});
+		}
+		compacting.join();
+		autoSave.flush();
+		
+		Optional<SavedOngoing> saved = FileSystemUtils.getSavedSessionFromDir(Objects.requireNonNull(mTempDir.listFiles())[0]);
+		assertTrue(saved.isPresent());
+		for (Bin bin: registry.getOrderedBins()) {
+			for (Part part: bin.getParts()) {
+				assertEquals(part.getCountedQuantity(), findPart(saved.get(), bin, part).getCountedQuantity());
+			}
+		}
+		autoSave.discard();
+		
+		System.out.println("AutoSave edits during compaction PASSED");
+		
+	}
+	
+	@Test
+	public void testTornLogRecord() throws IOException {
+		
+		File file = new File(mTempDir, WriteAheadLog.FILE_NAME);
+		try (WriteAheadLog log = new WriteAheadLog(file)) {
+			log.append(List.of(
+					new WriteAheadLog.Entry("ABCD-0001", "301-Good Parts", "AAAA.BBBBB.CCC", Part.PartProperty.COUNTED_QUANTITY, 0, 4),
+					new WriteAheadLog.Entry("ABCD-0001", "301-Good Parts", "AAAA.BBBBB.CCC", Part.PartProperty.COMMENTS, "", "Damaged box"),
+					new WriteAheadLog.Entry("ABCD-0001", "301-Good Parts", "AAAA.BBBBB.CCC", Part.PartProperty.ADJUSTMENT, 0, -2)
+			));
+		}
+		
+		List<WriteAheadLog.Entry> entries = WriteAheadLog.read(file);
+		assertEquals(3, entries.size());
+		assertEquals("Damaged box", entries.get(1).newValue());
+		assertEquals(-2, entries.get(2).newValue());
+		
+		// Cut the last record short, like a crash part way through a write would
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+		assertEquals(2, WriteAheadLog.read(file).size());
+		
+		// Reopening the log cuts off the torn record, so anything appended after it can still be read
+		try (WriteAheadLog log = new WriteAheadLog(file)) {
+			log.append(List.of(entries.get(2)));
+		}
+		assertEquals(entries, WriteAheadLog.read(file));
+		
+		System.out.println("WriteAheadLog torn record PASSED");
+		
+	}
+	
+	@Test
+	public void testUnknownPropertyCode() throws IOException {
+		
+		File file = new File(mTempDir, WriteAheadLog.FILE_NAME);
+		try (WriteAheadLog log = new WriteAheadLog(file)) {
+			log.append(List.of(new WriteAheadLog.Entry("ABCD-0001", "301-Good Parts", "AAAA.BBBBB.CCC", Part.PartProperty.COUNTED_QUANTITY, 0, 4)));
+		}
+		
+		// A whole record with a good checksum, but a property code nothing has, like a log written by a newer version would have
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordOut = new DataOutputStream(record);
+		for (String str: new String[] {"ABCD-0001", "301-Good Parts", "AAAA.BBBBB.CCC"}) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			recordOut.writeInt(bytes.length);
+			recordOut.write(bytes);
+		}
+		recordOut.writeByte(200);
+		recordOut.writeByte(0);
+		recordOut.writeByte(0);
+		CRC32 crc = new CRC32();
+		crc.update(record.toByteArray());
+		
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+			out.writeInt(record.size());
+			record.writeTo(out);
+			out.writeInt((int) crc.getValue());
+		}
+		
+		assertThrows(IOException.class, () -> WriteAheadLog.read(file));
+		
+		System.out.println("WriteAheadLog unknown property code PASSED");
+		
+	}
+	
+	private static Part findPart(SavedOngoing saved, Bin bin, Part part) {
+		return saved.getBins().stream().filter(b -> b.getBinNum().equals(bin.getBinNum())).findFirst().orElseThrow()
+				       .getParts().stream().filter(p -> p.getPartNumber().equals(part.getPartNumber())).findFirst().orElseThrow();
+	}
+	
+}
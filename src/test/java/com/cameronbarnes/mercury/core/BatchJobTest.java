@@ -0,0 +1,151 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.excel.ExcelImporter;
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchJobTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testScannerLog() throws IOException {
+		
+		ArrayList<Bin> bins = generateInput(1);
+		Bin counted = bins.get(0);
+		
+		// Count everything in the first bin correctly, with one part that isn't anywhere in the session
+		StringBuilder log = new StringBuilder(counted.getBinNum()).append('\n');
+		int numCounted = 0;
+		for (Part part: counted.getParts()) {
+			if (part.getPhysicalQuantity() == 0)
+				continue;
+			log.append(part.getPartNumber()).append('\n');
+			if (part.getPhysicalQuantity() > 1)
+				log.append(part.getPhysicalQuantity()).append('\n');
+			numCounted++;
+		}
+		log.append("ZZZZ.ZZZZZ.ZZZ\n");
+		File counts = new File(mTempDir, "scanner.log");
+		Files.writeString(counts.toPath(), log);
+		
+		File output = new File(mTempDir, "count.xlsx");
+		Optional<BatchJob.Result> result = runJob(new BatchJob(new File(mTempDir, "input"), counts, output, true));
+		
+		assertTrue(result.isPresent());
+		assertTrue(output.exists());
+		// The input is only read, none of the files should have been moved out of it
+		assertEquals(bins.size(), Objects.requireNonNull(new File(mTempDir, "input").listFiles()).length);
+		assertEquals(bins.size(), result.get().numBins());
+		assertEquals(bins.stream().mapToInt(bin -> bin.getParts().size()).sum(), result.get().numParts());
+		assertEquals(numCounted, result.get().numCounted());
+		assertEquals(1, result.get().numUnmatched());
+		assertEquals(numNotCounted(bins, counted), result.get().numNeedsAdjustment());
+		
+		System.out.println("Batch job with scanner log PASSED");
+		
+	}
+	
+	@Test
+	public void testCsvJobFile() throws IOException {
+		
+		ArrayList<Bin> bins = generateInput(2);
+		Bin counted = bins.get(bins.size() - 1);
+		
+		StringBuilder csv = new StringBuilder("PartNumber,Quantity,Bin\n");
+		int numCounted = 0;
+		for (Part part: counted.getParts()) {
+			if (part.getPhysicalQuantity() == 0)
+				continue;
+			csv.append('"').append(part.getPartNumber()).append("\",").append(part.getPhysicalQuantity()).append(',').append(counted.getBinNum()).append('\n');
+			numCounted++;
+		}
+		csv.append(counted.getParts().get(0).getPartNumber()).append(",1,ZZZZ-9999\n"); // Not a bin we have
+		Files.writeString(new File(mTempDir, "counts.csv").toPath(), csv);
+		
+		File job = new File(mTempDir, "job.properties");
+		Files.writeString(job.toPath(), "input=input\ncounts=counts.csv\noutput=from-job.xlsx\nautoAdjust=true\n");
+		
+		// The command line wins over the job file
+		BatchJob batchJob = BatchJob.fromArgs(new String[]{"--job", job.getPath(), "--output", new File(mTempDir, "count.xlsx").getPath()});
+		Optional<BatchJob.Result> result = runJob(batchJob);
+		
+		assertTrue(result.isPresent());
+		assertTrue(new File(mTempDir, "count.xlsx").exists());
+		assertFalse(new File(mTempDir, "from-job.xlsx").exists());
+		assertEquals(numCounted, result.get().numCounted());
+		assertEquals(1, result.get().numUnmatched());
+		assertEquals(numNotCounted(bins, counted), result.get().numNeedsAdjustment());
+		
+		assertThrows(IllegalArgumentException.class, () -> BatchJob.fromArgs(new String[]{"--input", "somewhere"}));
+		
+		System.out.println("Batch job with csv job file PASSED");
+		
+	}
+	
+	/**
+	 * Writes a few bins into the input folder, and reads them back so we know what's in there, in the same order the session will have them
+	 */
+	private ArrayList<Bin> generateInput(long seed) throws IOException {
+		
+		File input = new File(mTempDir, "input");
+		StockStatusGenerator.generate(new StockStatusGenerator.Settings(5, 3, 15, 0, 0, 0.5, seed), input, () -> {});
+		
+		ArrayList<Bin> bins = new ArrayList<>();
+		for (File file: Objects.requireNonNull(input.listFiles())) {
+			bins.add(ExcelImporter.importBinFromStockStatusFile(file).orElseThrow());
+		}
+		bins.sort(Comparator.comparing(Bin::getBinNum));
+		return bins;
+		
+	}
+	
+	private static Optional<BatchJob.Result> runJob(BatchJob job) throws IOException {
+		
+		FileSystemUtils.createProjectDirs();
+		Options options = new Options();
+		options.setAllowedAutoAdjustment(true);
+		return job.run(new Session(options));
+		
+	}
+	
+	/**
+	 * @return the number of parts that should be in stock but weren't counted, these are the ones that should still need adjusting
+	 */
+	private static long numNotCounted(ArrayList<Bin> bins, Bin counted) {
+		return bins.stream().filter(bin -> bin != counted).flatMap(bin -> bin.getParts().stream()).filter(part -> part.getPhysicalQuantity() != 0).count();
+	}
+	
+}
@@ -0,0 +1,100 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.BinRegistry;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testPooledParseMatchesSequential() throws IOException {
+		
+		// Plenty of duplicate bins, some bad rows, and a lot more files than the pool parses ahead
+		StockStatusGenerator.Summary summary = StockStatusGenerator.generate(new StockStatusGenerator.Settings(60, 1, 30, 0.3, 0.05, 0.5, 25), mTempDir, () -> {});
+		
+		// And a few files that look like stockstatus files but can't be read at all
+		Files.writeString(new File(mTempDir, "stockstatus_garbage.xlsx").toPath(), "This isn't a workbook");
+		Files.write(new File(mTempDir, "stockstatus_empty.xls").toPath(), new byte[0]);
+		File whole = Objects.requireNonNull(mTempDir.listFiles((dir, name) -> name.endsWith(".xlsx") && !name.contains("garbage")))[0];
+		Files.write(new File(mTempDir, "stockstatus_truncated.xlsx").toPath(), Arrays.copyOf(Files.readAllBytes(whole.toPath()), 200));
+		
+		List<File> files = new ArrayList<>(List.of(Objects.requireNonNull(mTempDir.listFiles())));
+		files.sort(Comparator.comparing(File::getName));
+		assertTrue(files.size() > Runtime.getRuntime().availableProcessors() * 2);
+		
+		BinRegistry sequential = new BinRegistry();
+		ArrayList<File> sequentialKept = new ArrayList<>();
+		Ingest.parseStockStatusFiles(files, ScanClassifier.DEFAULT, (file, bin) -> {
+			if (bin.isPresent() && sequential.putIfNewer(bin.get()))
+				sequentialKept.add(file);
+		}, () -> false, 1);
+		
+		BinRegistry pooled = new BinRegistry();
+		ArrayList<File> pooledKept = new ArrayList<>();
+		ArrayList<File> seen = new ArrayList<>();
+		Ingest.parseStockStatusFiles(files, ScanClassifier.DEFAULT, (file, bin) -> {
+			seen.add(file);
+			if (bin.isPresent() && pooled.putIfNewer(bin.get()))
+				pooledKept.add(file);
+		}, () -> false, 4);
+		
+		assertEquals(summary.numBins(), sequential.size());
+		assertEquals(summary.numParts(), sequential.getNumParts());
+		assertEquals(files, seen); // Every file is handed over in order, even the ones without a bin
+		assertEquals(sequential.getOrderedBins(), pooled.getOrderedBins());
+		assertEquals(sequentialKept, pooledKept);
+		assertTrue(pooledKept.stream().noneMatch(file -> file.getName().contains("garbage") || file.getName().contains("empty") || file.getName().contains("truncated")));
+		
+		System.out.println("Pooled parse matches sequential PASSED");
+		
+	}
+	
+	@Test
+	public void testOnlyStockStatusExtensions() throws IOException {
+		
+		// A text file with a comma in its first line would get picked up by the csv reader if it was let through
+		for (String name: List.of("notes.txt", "README", "stockstatus.xlsx.bak", "STOCKSTATUS.XLSX", "stockstatus.xls", "stockstatus.csv", "stockstatus.htm", "stockstatus.html")) {
+			Files.writeString(new File(mTempDir, name).toPath(), "PartNumber,PartDescription\n");
+		}
+		assertTrue(new File(mTempDir, "folder.xlsx").mkdir());
+		
+		List<String> names = Ingest.getStockStatusFiles(mTempDir).stream().map(File::getName).sorted().toList();
+		assertEquals(List.of("STOCKSTATUS.XLSX", "stockstatus.csv", "stockstatus.htm", "stockstatus.html", "stockstatus.xls"), names);
+		
+		System.out.println("Ingest extension allow list PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,88 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestWorkerTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testCancelledIngest() throws IOException, InterruptedException {
+		
+		FileSystemUtils.createProjectDirs();
+		Session session = new Session(new Options());
+		AtomicInteger binsChanged = new AtomicInteger();
+		session.addSessionListener(new SessionListener() {
+			@Override
+			public void binsChanged(Session session) {
+				binsChanged.incrementAndGet();
+			}
+		});
+		
+		// No duplicate bins, so every file that gets parsed before we cancel ends up in the session
+		StockStatusGenerator.generate(new StockStatusGenerator.Settings(40, 5, 20, 0, 0, 0.5, 7), mTempDir, () -> {});
+		File[] files = Objects.requireNonNull(mTempDir.listFiles());
+		int numFiles = files.length;
+		
+		CountDownLatch finished = new CountDownLatch(1);
+		AtomicInteger added = new AtomicInteger();
+		IngestWorker[] worker = new IngestWorker[1];
+		worker[0] = new IngestWorker(session, List.of(mTempDir), bin -> {
+			// This should always be on the EDT, since that's where the table is reading the bins from
+			assertTrue(SwingUtilities.isEventDispatchThread());
+			if (added.incrementAndGet() == 10)
+				worker[0].requestCancel();
+		}, finished::countDown);
+		worker[0].execute();
+		assertTrue(finished.await(60, TimeUnit.SECONDS));
+		
+		// The bins we kept have had their files moved, and everything we didn't get to is still sitting where it was
+		int numBins = session.getBins().size();
+		assertTrue(numBins >= 10 && numBins < numFiles);
+		assertEquals(numBins, added.get());
+		assertEquals(numFiles - numBins, Objects.requireNonNull(mTempDir.listFiles()).length);
+		assertEquals(1, binsChanged.get());
+		
+		// The process folder is shared with the other tests, so we clean up what we moved into it
+		for (File file: files) {
+			if (!file.exists())
+				assertTrue(new File(Options.PROCESS_FOLDER, file.getName()).delete());
+		}
+		
+		System.out.println("Cancelled ingest PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,97 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.cameronbarnes.mercury.core.ScanClassifier.ScanType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanClassifierTest {
+	
+	@Test
+	public void testClassify() {
+		
+		ScanClassifier classifier = new Options().getScanClassifier();
+		
+		assertEquals(PART_NUMBER, classifier.classify("AB.1234.X").type());
+		assertEquals(BIN_NUMBER, classifier.classify(" abcd-0001 ").type());
+		assertEquals("abcd-0001", classifier.classify(" abcd-0001 ").value());
+		assertEquals(QUANTITY, classifier.classify("-12").type());
+		assertEquals(12, classifier.classify("+12").quantity());
+		assertEquals(COMMAND, classifier.classify("!done").type());
+		assertEquals("done", classifier.classify("!done").value());
+		assertEquals(UNKNOWN, classifier.classify("not a scan").type());
+		assertEquals(UNKNOWN, classifier.classify("12345678901").type()); // Too big to be a quantity
+		assertEquals(UNKNOWN, classifier.classify("").type());
+		
+		System.out.println("ScanClassifier defaults PASSED");
+		
+	}
+	
+	@Test
+	public void testSitePatterns() {
+		
+		Options options = new Options();
+		options.setScanPatterns("\\d{6}", "[A-Z]\\d{2}", "#");
+		options.setWarehouseBinPattern("302-Bad Parts", "BAD-\\d+");
+		ScanClassifier classifier = options.getScanClassifier();
+		
+		// All digit part numbers have to win over quantities
+		assertEquals(PART_NUMBER, classifier.classify("123456").type());
+		assertEquals(QUANTITY, classifier.classify("12").type());
+		assertEquals(BIN_NUMBER, classifier.classify("A12").type());
+		assertEquals(BIN_NUMBER, classifier.classify("BAD-7").type());
+		assertEquals(COMMAND, classifier.classify("#next").type());
+		assertEquals(UNKNOWN, classifier.classify("!next").type());
+		
+		assertTrue(classifier.isBinNumber("BAD-7", "302-Bad Parts"));
+		assertFalse(classifier.isBinNumber("BAD-7", "301-Good Parts"));
+		assertFalse(classifier.isBinNumber("A12", "302-Bad Parts"));
+		
+		// New bins are checked against the classifier they're given, not the default format
+		assertDoesNotThrow(() -> new Bin("A12", "301-Good Parts", new ArrayList<>(), null, classifier));
+		assertDoesNotThrow(() -> new Bin("BAD-7", "302-Bad Parts", new ArrayList<>(), null, classifier));
+		assertThrows(RuntimeException.class, () -> new Bin("ABCD-0001", "301-Good Parts", new ArrayList<>(), null, classifier));
+		assertThrows(RuntimeException.class, () -> new Bin("A12", "301-Good Parts", new ArrayList<>(), null, ScanClassifier.DEFAULT));
+		
+		// A broken pattern falls back to the default instead of throwing
+		ScanClassifier broken = new ScanClassifier("[", null, "", Map.of());
+		assertTrue(broken.isPartNumber("AB.1234.X"));
+		assertTrue(broken.isBinNumber("ABCD-0001"));
+		
+		// Warehouse patterns fall back to the bin number pattern that was actually used, even when that one was broken or missing too
+		HashMap<String, String> warehousePatterns = new HashMap<>();
+		warehousePatterns.put("302-Bad Parts", "(");
+		warehousePatterns.put("303-Returns", null);
+		ScanClassifier brokenWarehouses = new ScanClassifier(null, "[", "", warehousePatterns);
+		assertTrue(brokenWarehouses.isBinNumber("ABCD-0001", "302-Bad Parts"));
+		assertTrue(brokenWarehouses.isBinNumber("ABCD-0001", "303-Returns"));
+		assertFalse(brokenWarehouses.isBinNumber("BAD-7", "302-Bad Parts"));
+		
+		System.out.println("ScanClassifier site patterns PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,77 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.core;
+
+import com.cameronbarnes.mercury.util.DebugUtils;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testListenerEvents() throws IOException {
+		
+		FileSystemUtils.createProjectDirs();
+		Session session = new Session(new Options());
+		
+		ArrayList<String> events = new ArrayList<>();
+		session.addSessionListener(new SessionListener() {
+			@Override
+			public void stateChanged(Session session, State state) {
+				events.add(state.toString());
+			}
+			
+			@Override
+			public void binsChanged(Session session) {
+				events.add("BINS " + session.getBins().size());
+			}
+		});
+		
+		StockStatusGenerator.generate(StockStatusGenerator.Settings.DEFAULT.withNumBins(10).withSeed(11), mTempDir, () -> {});
+		File[] files = Objects.requireNonNull(mTempDir.listFiles());
+		session.addIngest(mTempDir);
+		session.count();
+		session.setBins(DebugUtils.generateTestBinData(3));
+		session.mainMenu();
+		
+		assertEquals(List.of("BINS 10", "INGEST", "COUNT", "BINS 3", "MAIN_MENU"), events);
+		assertEquals(SessionListener.State.MAIN_MENU, session.getState());
+		
+		// The process folder is shared with the other tests, so we clean up what we moved into it
+		for (File file: files) {
+			new File(Options.PROCESS_FOLDER, file.getName()).delete();
+		}
+		
+		System.out.println("Session listener events PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,69 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports whole counts of a few sizes, the bigger ones go over ExcelExporter.STREAMING_ROW_THRESHOLD so they're written with the streaming export.
+ * Run it with mvn -Pbenchmark test -Djmh.args="ExcelExporterBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExcelExporterBenchmark {
+	
+	@Param({"10", "100", "1000"})
+	public int mNumBins;
+	
+	private ArrayList<Bin> mBins;
+	private File mDir;
+	private File mOut;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		mBins = DebugUtils.generateTestBinData(mNumBins);
+		mDir = Files.createTempDirectory("mercury-export-benchmark").toFile();
+		mOut = new File(mDir, "count.xlsx");
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		FileSystemUtils.deleteDir(mDir);
+	}
+	
+	@Benchmark
+	public boolean exportCycleCount() {
+		return ExcelExporter.exportCycleCount(mBins, mOut);
+	}
+	
+}
@@ -0,0 +1,127 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExcelExporterTest {
+
+	@TempDir
+	File mTempDir;
+
+	@Test
+	public void testStreamingMatchesDOM() throws IOException {
+
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(20);
+
+		File dom = new File(mTempDir, "dom.xlsx");
+		File streamed = new File(mTempDir, "streamed.xlsx");
+		assertTrue(ExcelExporter.exportCycleCount(bins, dom));
+		// A tiny window so that most of the rows have been flushed to the temp file before the sheet is written
+		assertTrue(ExcelExporter.exportCycleCountStreaming(bins, streamed, 10, true));
+
+		// SXSSF writes the strings inline, which compresses well enough that POI mistakes it for a zip bomb when we read it back
+		double minInflateRatio = ZipSecureFile.getMinInflateRatio();
+		ZipSecureFile.setMinInflateRatio(0);
+		try (Workbook expected = new XSSFWorkbook(new FileInputStream(dom)); Workbook actual = new XSSFWorkbook(new FileInputStream(streamed))) {
+
+			assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+
+			for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+
+				Sheet expectedSheet = expected.getSheetAt(i);
+				Sheet actualSheet = actual.getSheetAt(i);
+				assertEquals(expectedSheet.getSheetName(), actualSheet.getSheetName());
+				assertEquals(expectedSheet.getNumMergedRegions(), actualSheet.getNumMergedRegions());
+				assertEquals(expectedSheet.getLastRowNum(), actualSheet.getLastRowNum());
+				for (int column = 0; column < 9; column++) {
+					assertEquals(expectedSheet.getColumnWidth(column), actualSheet.getColumnWidth(column));
+				}
+
+				for (Row expectedRow: expectedSheet) {
+					Row actualRow = actualSheet.getRow(expectedRow.getRowNum());
+					assertNotNull(actualRow);
+					assertEquals(expectedRow.getLastCellNum(), actualRow.getLastCellNum());
+					for (Cell expectedCell: expectedRow) {
+						Cell actualCell = actualRow.getCell(expectedCell.getColumnIndex());
+						assertEquals(expectedCell.getCellType(), actualCell.getCellType());
+						if (expectedCell.getCellType() == CellType.NUMERIC) {
+							assertEquals(expectedCell.getNumericCellValue(), actualCell.getNumericCellValue());
+						} else {
+							assertEquals(expectedCell.getStringCellValue(), actualCell.getStringCellValue());
+						}
+					}
+				}
+
+			}
+
+		} finally {
+			ZipSecureFile.setMinInflateRatio(minInflateRatio);
+		}
+
+		System.out.println("Streaming cycle count export PASSED");
+
+	}
+
+	@Test
+	public void testStyleCountIsFixed() throws IOException {
+
+		ArrayList<Bin> bins = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String binNum = String.format("TEST-%04d", i);
+			// Every tenth bin is empty so the no stock style gets used as well
+			int numParts = i % 10 == 0 ? 0 : 3;
+			bins.add(new Bin(binNum, "301-Good Parts", DebugUtils.generateTestPartList(binNum, "301-Good Parts", true, numParts), null));
+		}
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+
+			int defaultStyles = workbook.getNumCellStyles();
+			int defaultFonts = workbook.getNumberOfFonts();
+
+			ExcelExporter.exportBinsToWorkbook(workbook, bins);
+
+			assertEquals(5000, workbook.getNumberOfSheets());
+			// Header, body and no stock, no matter how many bins or parts there are
+			assertTrue(workbook.getNumCellStyles() <= defaultStyles + 3, "Expected at most 3 new styles, found " + (workbook.getNumCellStyles() - defaultStyles));
+			assertTrue(workbook.getNumberOfFonts() <= defaultFonts + 2, "Expected at most 2 new fonts, found " + (workbook.getNumberOfFonts() - defaultFonts));
+
+		}
+
+		System.out.println("Cycle count export style count PASSED");
+
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import com.cameronbarnes.mercury.util.FileSystemUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a single stockstatus file of each format at a few sizes, with the streaming and the DOM importer.
+ * The DOM importer only differs for xlsx files, the html files are always read the same way.
+ * Run it with mvn -Pbenchmark test -Djmh.args="ExcelImporterBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExcelImporterBenchmark {
+	
+	@Param({"100", "1000", "10000"})
+	public int mNumParts;
+	
+	@Param({"XLSX", "HTM"})
+	public StockStatusGenerator.Format mFormat;
+	
+	private File mDir;
+	private File mFile;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		mDir = Files.createTempDirectory("mercury-import-benchmark").toFile();
+		mFile = new File(mDir, "stockstatus" + mFormat.getExtension());
+		String binNum = DebugUtils.generateRandomBinNumber();
+		StockStatusGenerator.writeStockStatusFile(DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, mNumParts), mFile, mFormat);
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		FileSystemUtils.deleteDir(mDir);
+	}
+	
+	@Benchmark
+	public Optional<Bin> importStreaming() {
+		return ExcelImporter.importBinFromStockStatusFile(mFile, true);
+	}
+	
+	@Benchmark
+	public Optional<Bin> importDom() {
+		return ExcelImporter.importBinFromStockStatusFile(mFile, false);
+	}
+	
+}
@@ -0,0 +1,322 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.excel;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import com.cameronbarnes.mercury.util.StockStatusGenerator;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExcelImporterTest {
+
+	@TempDir
+	File mTempDir;
+
+	@Test
+	public void testStreamingMatchesDOM() throws IOException {
+
+		String binNum = DebugUtils.generateRandomBinNumber();
+		List<Part> expected = DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 250);
+		File file = new File(mTempDir, "stockstatus.xlsx");
+		writeStockStatusWorkbook(expected, file);
+
+		Optional<Bin> streamed = ExcelImporter.importBinFromStockStatusFile(file, true);
+		Optional<Bin> dom = ExcelImporter.importBinFromStockStatusFile(file, false);
+
+		assertTrue(streamed.isPresent());
+		assertTrue(dom.isPresent());
+		assertEquals(dom.get(), streamed.get());
+		assertEquals(expected.size(), streamed.get().getParts().size());
+
+		// The parts should come out in the same order they are in the sheet
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPartNumber(), streamed.get().getParts().get(i).getPartNumber());
+			assertEquals(expected.get(i).getPhysicalQuantity(), streamed.get().getParts().get(i).getPhysicalQuantity());
+			assertEquals(expected.get(i).getCost(), streamed.get().getParts().get(i).getCost());
+		}
+
+		System.out.println("Streaming stockstatus import PASSED");
+
+	}
+
+	@Test
+	public void testStreamingSkipsInvalidRows() throws IOException {
+
+		File file = new File(mTempDir, "short.xlsx");
+		try (Workbook workbook = new XSSFWorkbook()) {
+			Sheet sheet = workbook.createSheet();
+			Row row = sheet.createRow(0);
+			for (int i = 0; i < 13; i++) { // One cell short of a valid part row
+				row.createCell(i).setCellValue(i);
+			}
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				workbook.write(out);
+			}
+		}
+
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(file, true).isEmpty());
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(file, false).isEmpty());
+
+	}
+
+	@Test
+	public void testHtmStockStatusImport() throws IOException {
+
+		String binNum = DebugUtils.generateRandomBinNumber();
+		List<Part> expected = DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 100);
+
+		StringBuilder html = new StringBuilder("<html><body><table>\r\n");
+		html.append("<tr><td><b>PartNumber</b></td><td><b>PartDescription</b></td></tr>\r\n");
+		for (Part part: expected) {
+			html.append("<tr>");
+			appendCells(html, part.getPartNumber(), part.getPartDescription(), part.getWarehouse(), part.getBinNum(),
+					String.valueOf(part.getPhysicalQuantity()), String.valueOf(part.getAllocatedQuantity()), String.valueOf(part.getFreeQuantity()),
+					String.valueOf(part.getCost()), "0", "0", "0", "0", "0", "0");
+			html.append("</tr>\r\n");
+		}
+		// A blank description is still a part, the old regex reader used to drop these
+		html.append("<tr>");
+		appendCells(html, "ZZ.0000.Z", "", "301-Good Parts", binNum, "3", "0", "3", "1.5", "0", "0", "0", "0", "0", "0");
+		html.append("</tr>\r\n");
+		html.append("<tr><td>13</td><td>cells</td><td>is</td><td>not</td><td>a</td><td>part</td><td>1</td><td>1</td><td>1</td><td>1</td><td>1</td><td>1</td><td>1</td></tr>\r\n");
+		html.append("</table></body></html>");
+
+		// CSS8 writes these out as UTF-16LE with a byte order mark
+		File file = new File(mTempDir, "stockstatus.xls");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[]{(byte) 0xFF, (byte) 0xFE});
+			out.write(html.toString().getBytes(StandardCharsets.UTF_16LE));
+		}
+
+		Optional<Bin> bin = ExcelImporter.importBinFromStockStatusFile(file);
+		assertTrue(bin.isPresent());
+		assertEquals(binNum, bin.get().getBinNum());
+		assertEquals(expected.size() + 1, bin.get().getParts().size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPartNumber(), bin.get().getParts().get(i).getPartNumber());
+			assertEquals(expected.get(i).getPartDescription(), bin.get().getParts().get(i).getPartDescription());
+			assertEquals(expected.get(i).getPhysicalQuantity(), bin.get().getParts().get(i).getPhysicalQuantity());
+			assertEquals(expected.get(i).getCost(), bin.get().getParts().get(i).getCost());
+		}
+		Part blank = bin.get().getParts().get(expected.size());
+		assertEquals("ZZ.0000.Z", blank.getPartNumber());
+		assertEquals("", blank.getPartDescription());
+		assertEquals(3, blank.getPhysicalQuantity());
+
+		System.out.println("HTM stockstatus import PASSED");
+
+	}
+
+	@Test
+	public void testLegacyXlsImport() throws IOException {
+
+		String binNum = DebugUtils.generateRandomBinNumber();
+		List<Part> expected = DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 100);
+		File file = new File(mTempDir, "legacy.xls");
+		try (Workbook workbook = new HSSFWorkbook()) {
+			writeStockStatusWorkbook(workbook, expected, file);
+		}
+
+		Optional<Bin> bin = ExcelImporter.importBinFromStockStatusFile(file);
+		assertTrue(bin.isPresent());
+		assertEquals(expected.size(), bin.get().getParts().size());
+		assertEquals(expected.get(0).getPartNumber(), bin.get().getParts().get(0).getPartNumber());
+
+		System.out.println("Legacy xls stockstatus import PASSED");
+
+	}
+
+	@Test
+	public void testCsvImport() throws IOException {
+
+		String binNum = DebugUtils.generateRandomBinNumber();
+		List<Part> expected = DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 100);
+
+		StringBuilder csv = new StringBuilder("PartNumber,PartDescription,WareHouse,Bin,PhysicalQty,AllocatedQty,FreeQty,Cost,OnOrder,BackOrder,LastReceived,LastIssued,LastMonthConsumed,Last3MonthConsumed\r\n");
+		for (Part part: expected) {
+			csv.append(part.getPartNumber()).append(',')
+					.append('"').append(part.getPartDescription().replace("\"", "\"\"")).append("\",")
+					.append(part.getWarehouse()).append(',').append(part.getBinNum()).append(',')
+					.append(part.getPhysicalQuantity()).append(',').append(part.getAllocatedQuantity()).append(',')
+					.append(part.getFreeQuantity()).append(',').append(part.getCost())
+					.append(",0,0,0,0,0,0\r\n");
+		}
+
+		File file = new File(mTempDir, "stockstatus.csv");
+		Files.writeString(file.toPath(), csv);
+
+		Optional<Bin> bin = ExcelImporter.importBinFromStockStatusFile(file);
+		assertTrue(bin.isPresent());
+		assertEquals(expected.size(), bin.get().getParts().size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPartDescription(), bin.get().getParts().get(i).getPartDescription());
+			assertEquals(expected.get(i).getCost(), bin.get().getParts().get(i).getCost());
+		}
+
+		System.out.println("CSV stockstatus import PASSED");
+
+	}
+
+	@Test
+	public void testFormatSniffing() throws IOException {
+
+		byte[] header = new byte[StockStatusReaders.HEADER_LENGTH];
+
+		File xlsx = new File(mTempDir, "sniff.xls"); // The wrong extension shouldn't matter
+		writeStockStatusWorkbook(DebugUtils.generateTestPartList(DebugUtils.generateRandomBinNumber(), "301-Good Parts", false, 1), xlsx);
+		int length = StockStatusReaders.readHeader(xlsx, header);
+		assertInstanceOf(XlsxStockStatusReader.class, StockStatusReaders.find(header, length).orElseThrow());
+		assertInstanceOf(XlsxStockStatusReader.class, StockStatusReaders.find(header, length, false).orElseThrow());
+
+		byte[] html = "\uFEFF<html>".getBytes(StandardCharsets.UTF_16LE);
+		assertInstanceOf(HtmStockStatusReader.class, StockStatusReaders.find(html, html.length).orElseThrow());
+
+		byte[] text = "Nothing to see here\r\n".getBytes(StandardCharsets.UTF_8);
+		assertTrue(StockStatusReaders.find(text, text.length).isEmpty());
+
+		// A file we can't read is just skipped and left where it is
+		File junk = new File(mTempDir, "junk.xlsx");
+		Files.write(junk.toPath(), text);
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(junk).isEmpty());
+		assertTrue(junk.exists());
+
+		// OLE2 files that aren't Excel 97 workbooks, like a password protected .xlsx or an Excel 5 workbook, are skipped too instead of throwing
+		File encrypted = new File(mTempDir, "encrypted.xlsx");
+		writeOle2File(encrypted, "EncryptedPackage");
+		assertInstanceOf(HssfStockStatusReader.class, StockStatusReaders.find(Files.readAllBytes(encrypted.toPath()), 8).orElseThrow());
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(encrypted).isEmpty());
+		assertTrue(encrypted.exists());
+		File biff5 = new File(mTempDir, "biff5.xls");
+		writeOle2File(biff5, "Book");
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(biff5).isEmpty());
+		
+		// But an empty file is deleted
+		File empty = new File(mTempDir, "empty.xlsx");
+		assertTrue(empty.createNewFile());
+		assertTrue(ExcelImporter.importBinFromStockStatusFile(empty).isEmpty());
+		assertFalse(empty.exists());
+
+		System.out.println("Stockstatus format sniffing PASSED");
+
+	}
+
+	/**
+	 * Writes an OLE2 file with a single entry in it, what's in the entry doesn't matter, POI decides what kind of file it is from the name
+	 */
+	private static void writeOle2File(File file, String entry) throws IOException {
+
+		try (POIFSFileSystem fileSystem = new POIFSFileSystem(); FileOutputStream out = new FileOutputStream(file)) {
+			fileSystem.createDocument(new ByteArrayInputStream(new byte[64]), entry);
+			fileSystem.writeFilesystem(out);
+		}
+
+	}
+
+	@Test
+	public void testGeneratedStockStatusFiles() throws IOException {
+
+		for (StockStatusGenerator.Format format: StockStatusGenerator.Format.values()) {
+
+			String binNum = DebugUtils.generateRandomBinNumber();
+			List<Part> expected = DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 50);
+			File file = new File(mTempDir, "generated" + format.getExtension());
+			StockStatusGenerator.writeStockStatusFile(expected, file, format);
+
+			Optional<Bin> bin = ExcelImporter.importBinFromStockStatusFile(file);
+			assertTrue(bin.isPresent());
+			assertEquals(expected.size(), bin.get().getParts().size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getPartNumber(), bin.get().getParts().get(i).getPartNumber());
+				assertEquals(expected.get(i).getPhysicalQuantity(), bin.get().getParts().get(i).getPhysicalQuantity());
+				assertEquals(expected.get(i).getCost(), bin.get().getParts().get(i).getCost());
+			}
+
+		}
+
+		System.out.println("Generated stockstatus files PASSED");
+
+	}
+
+	private static void appendCells(StringBuilder html, String... cells) {
+		for (String cell: cells) {
+			html.append("<td>").append(cell).append("</td>");
+		}
+	}
+
+	/**
+	 * Writes the parts out in the same 14 column layout as the stockstatus files we get from the ERP, including the title row
+	 */
+	private static void writeStockStatusWorkbook(List<Part> parts, File file) throws IOException {
+		try (Workbook workbook = new XSSFWorkbook()) {
+			writeStockStatusWorkbook(workbook, parts, file);
+		}
+	}
+
+	private static void writeStockStatusWorkbook(Workbook workbook, List<Part> parts, File file) throws IOException {
+
+		String[] titles = {"PartNumber", "PartDescription", "WareHouse", "Bin", "PhysicalQty", "AllocatedQty", "FreeQty", "Cost",
+				"OnOrder", "BackOrder", "LastReceived", "LastIssued", "LastMonthConsumed", "Last3MonthConsumed"};
+
+		Sheet sheet = workbook.createSheet();
+		Row header = sheet.createRow(0);
+		for (int i = 0; i < titles.length; i++) {
+			header.createCell(i).setCellValue(titles[i]);
+		}
+
+		for (int i = 0; i < parts.size(); i++) {
+			Part part = parts.get(i);
+			Row row = sheet.createRow(i + 1);
+			row.createCell(0).setCellValue(part.getPartNumber());
+			row.createCell(1).setCellValue(part.getPartDescription());
+			row.createCell(2).setCellValue(part.getWarehouse());
+			row.createCell(3).setCellValue(part.getBinNum());
+			row.createCell(4).setCellValue(part.getPhysicalQuantity());
+			row.createCell(5).setCellValue(part.getAllocatedQuantity());
+			row.createCell(6).setCellValue(part.getFreeQuantity());
+			row.createCell(7).setCellValue(part.getCost());
+			for (int j = 8; j < 14; j++) {
+				row.createCell(j).setCellValue(0);
+			}
+		}
+
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			workbook.write(out);
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.gui.tables.models;
+
+import com.cameronbarnes.mercury.core.Options;
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Does the same model calls a JTable makes to paint every cell of a big bin, which is getColumnClass for the renderer, isCellEditable, and getValueAt.
+ * Run it with mvn -Pbenchmark test -Djmh.args="CycleCountTableModelBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CycleCountTableModelBenchmark {
+	
+	@Param({"2000"})
+	public int mNumParts;
+	
+	@Param({"false", "true"})
+	public boolean mShowAllColumns;
+	
+	private CycleCountTableModel mModel;
+	
+	@Setup
+	public void setup() {
+		
+		Options options = new Options();
+		options.getPartDetailSettings().replaceAll((key, value) -> mShowAllColumns);
+		
+		String binNum = DebugUtils.generateRandomBinNumber();
+		Bin bin = new Bin(binNum, "301-Good Parts", DebugUtils.generateTestPartList(binNum, "301-Good Parts", true, mNumParts), null);
+		mModel = new CycleCountTableModel(bin, options, () -> {});
+		
+	}
+	
+	@Benchmark
+	public void paintWholeTable(Blackhole blackhole) {
+		
+		int rows = mModel.getRowCount();
+		int columns = mModel.getColumnCount();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				blackhole.consume(mModel.getColumnClass(column));
+				blackhole.consume(mModel.isCellEditable(row, column));
+				blackhole.consume(mModel.getValueAt(row, column));
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,90 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.gui.tables.models;
+
+import com.cameronbarnes.mercury.core.Options;
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+import com.cameronbarnes.mercury.util.DebugUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CycleCountTableModelTest {
+	
+	@Test
+	public void testColumnLayoutFollowsOptions() {
+		
+		Options options = new Options();
+		options.getPartDetailSettings().replaceAll((key, value) -> false);
+		String binNum = DebugUtils.generateRandomBinNumber();
+		Bin bin = new Bin(binNum, "301-Good Parts", DebugUtils.generateTestPartList(binNum, "301-Good Parts", true, 10), null);
+		CycleCountTableModel model = new CycleCountTableModel(bin, options, () -> {});
+		
+		assertEquals(6, model.getColumnCount());
+		assertEquals(-1, model.getColumnIndexAtProperty(Part.PartProperty.COMMENTS));
+		assertEquals(3, model.getColumnIndexAtProperty(Part.PartProperty.COUNTED_QUANTITY));
+		
+		// Changing the options doesn't change the columns until the table is told its structure changed
+		options.getPartDetailSettings().replace("Comments", true);
+		options.getPartDetailSettings().replace("WareHouse", true);
+		assertEquals(6, model.getColumnCount());
+		model.fireTableStructureChanged();
+		
+		assertEquals(8, model.getColumnCount());
+		assertEquals(2, model.getColumnIndexAtProperty(Part.PartProperty.WAREHOUSE));
+		assertEquals(7, model.getColumnIndexAtProperty(Part.PartProperty.COMMENTS));
+		assertEquals(bin.getParts().get(4).getComments(), model.getValueAt(4, 7));
+		assertEquals(String.class, model.getColumnClass(7));
+		assertTrue(model.isCellEditable(0, 7));
+		
+		System.out.println("Cycle count table column layout PASSED");
+		
+	}
+	
+	@Test
+	public void testRowStatusFollowsParts() {
+		
+		String binNum = DebugUtils.generateRandomBinNumber();
+		Bin bin = new Bin(binNum, "301-Good Parts", DebugUtils.generateTestPartList(binNum, "301-Good Parts", false, 20), null);
+		CycleCountTableModel model = new CycleCountTableModel(bin, new Options(), () -> {});
+		
+		for (int i = 0; i < bin.getParts().size(); i++) {
+			Part part = bin.getParts().get(i);
+			part.setAdjustment(0);
+			part.setCountedQuantity(part.getPhysicalQuantity());
+			assertEquals(CycleCountTableModel.RowStatus.GOOD, model.getRowStatus(i));
+		}
+		
+		Part part = bin.getParts().get(5);
+		part.setCountedQuantity(part.getPhysicalQuantity() + 3);
+		assertEquals(CycleCountTableModel.RowStatus.NEEDS_ADJUSTMENT, model.getRowStatus(5));
+		part.setAdjustment(3);
+		assertEquals(CycleCountTableModel.RowStatus.ADJUSTED, model.getRowStatus(5));
+		
+		// Once it's been replaced the model shouldn't be following the bin anymore
+		model.dispose();
+		part.setAdjustment(0);
+		assertEquals(CycleCountTableModel.RowStatus.ADJUSTED, model.getRowStatus(5));
+		assertEquals(CycleCountTableModel.RowStatus.NEEDS_ADJUSTMENT, new CycleCountTableModel(bin, new Options(), () -> {}).getRowStatus(5));
+		
+		System.out.println("Cycle count table row status PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,170 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.stock;
+
+import com.cameronbarnes.mercury.util.DebugUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinRegistryTest {
+
+	@Test
+	public void testOrderedView() {
+
+		BinRegistry registry = new BinRegistry();
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(200);
+		bins.forEach(registry::putIfNewer);
+
+		ArrayList<Bin> sorted = new ArrayList<>(registry.getOrderedBins());
+		sorted.sort(Comparator.comparing(Bin::getBinNum));
+		assertEquals(sorted, registry.getOrderedBins());
+
+		for (Bin bin: bins) {
+			assertTrue(registry.get(bin.getBinNum(), bin.getWarehouse()).isPresent());
+		}
+
+		// The view can't be changed behind the registry's back
+		assertThrows(UnsupportedOperationException.class, () -> registry.getOrderedBins().add(bins.get(0)));
+		assertThrows(UnsupportedOperationException.class, () -> registry.getOrderedBins().remove(0));
+
+		System.out.println("BinRegistry ordered view PASSED");
+
+	}
+
+	@Test
+	public void testReplaceIfNewer() {
+
+		FileTime older = FileTime.fromMillis(1000);
+		FileTime newer = FileTime.fromMillis(2000);
+
+		Bin first = new Bin("ABCD-0001", "301-Good Parts", new ArrayList<>(), older);
+		Bin second = new Bin("ABCD-0001", "301-Good Parts", new ArrayList<>(), newer);
+		Bin other = new Bin("ABCD-0000", "301-Good Parts", new ArrayList<>(), older);
+
+		BinRegistry registry = new BinRegistry();
+		assertTrue(registry.putIfNewer(first));
+		assertTrue(registry.putIfNewer(other));
+		assertTrue(registry.putIfNewer(second));
+		assertFalse(registry.putIfNewer(first)); // Older than the one we have now, so it should be discarded
+
+		assertEquals(2, registry.size());
+		assertSame(other, registry.getOrderedBins().get(0));
+		assertSame(second, registry.getOrderedBins().get(1));
+
+		// Keyed by warehouse the same bin number in another warehouse is a different bin
+		BinRegistry byWarehouse = new BinRegistry(true);
+		assertTrue(byWarehouse.putIfNewer(first));
+		assertTrue(byWarehouse.putIfNewer(new Bin("ABCD-0001", "302-Bad Parts", new ArrayList<>(), older)));
+		assertEquals(2, byWarehouse.size());
+
+		assertTrue(registry.remove(second));
+		assertEquals(1, registry.size());
+		assertFalse(registry.contains("ABCD-0001", "301-Good Parts"));
+
+	}
+
+	@Test
+	public void testLookupIndexes() {
+
+		FileTime older = FileTime.fromMillis(1000);
+		FileTime newer = FileTime.fromMillis(2000);
+
+		BinRegistry registry = new BinRegistry();
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(50);
+		bins.forEach(registry::putIfNewer);
+
+		for (Bin bin: registry.getOrderedBins()) {
+			assertSame(bin, registry.getOrderedBins().get(registry.indexOfBinNumber(bin.getBinNum().toLowerCase())));
+			for (int i = 0; i < bin.getParts().size(); i++) {
+				assertEquals(bin.getParts().get(i).getPartNumber(), bin.getParts().get(bin.indexOfPart(bin.getParts().get(i).getPartNumber().toUpperCase())).getPartNumber());
+			}
+		}
+		assertEquals(-1, registry.indexOfBinNumber("ZZZZ-9999"));
+		assertEquals(-1, bins.get(0).indexOfPart("NOT.A.PART"));
+
+		// The index has to follow bins being replaced and removed
+		Bin first = new Bin("AAAA-0001", "301-Good Parts", new ArrayList<>(), older);
+		Bin second = new Bin("aaaa-0001", "301-Good Parts", new ArrayList<>(), newer);
+		registry.putIfNewer(first);
+		assertSame(first, registry.getOrderedBins().get(registry.indexOfBinNumber("aaaa-0001")));
+		registry.put(new Bin("AAAA-0001", "301-Good Parts", new ArrayList<>(), newer));
+		registry.remove(registry.getOrderedBins().get(registry.indexOfBinNumber("AAAA-0001")));
+		assertEquals(-1, registry.indexOfBinNumber("AAAA-0001"));
+		registry.put(second);
+		assertSame(second, registry.getOrderedBins().get(registry.indexOfBinNumber("AAAA-0001")));
+
+		System.out.println("BinRegistry lookup indexes PASSED");
+
+	}
+
+	@Test
+	public void testNeedsAdjustmentCounters() {
+
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(20);
+		BinRegistry registry = new BinRegistry(bins, false);
+		assertCountersMatch(registry);
+
+		// Count every part in the session, a few of them wrong, and the counters should follow along
+		int i = 0;
+		for (Bin bin: registry.getOrderedBins()) {
+			for (Part part: bin.getParts()) {
+				part.setCountedQuantity(part.getPhysicalQuantity() + (i++ % 7 == 0 ? 1 : 0));
+			}
+		}
+		assertCountersMatch(registry);
+
+		for (Bin bin: registry.getOrderedBins()) {
+			for (Part part: bin.getParts()) {
+				part.setAdjustment(part.getCountedQuantity() - part.getPhysicalQuantity());
+			}
+			assertTrue(bin.isDone());
+		}
+		assertEquals(0, registry.getNumNeedsAdjustment());
+
+		registry.getOrderedBins().stream().filter(bin -> !bin.isEmpty()).findFirst().orElseThrow().getParts().get(0).setCountedQuantity(-5);
+		assertEquals(1, registry.getNumNeedsAdjustment());
+		registry.remove(registry.getOrderedBins().stream().filter(bin -> !bin.isDone()).findFirst().orElseThrow());
+		assertCountersMatch(registry);
+		assertEquals(0, registry.getNumNeedsAdjustment());
+
+		System.out.println("Needs adjustment counters PASSED");
+
+	}
+
+	private static void assertCountersMatch(BinRegistry registry) {
+
+		int parts = 0;
+		int needsAdjustment = 0;
+		for (Bin bin: registry.getOrderedBins()) {
+			int binNeedsAdjustment = (int) bin.getParts().stream().filter(Part::needsAdjustment).count();
+			assertEquals(binNeedsAdjustment, bin.getNumNeedsAdjustment());
+			assertEquals(binNeedsAdjustment == 0, bin.isDone());
+			parts += bin.getParts().size();
+			needsAdjustment += binNeedsAdjustment;
+		}
+		assertEquals(parts, registry.getNumParts());
+		assertEquals(needsAdjustment, registry.getNumNeedsAdjustment());
+
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.stock;
+
+import com.cameronbarnes.mercury.util.DebugUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartSearchIndexTest {
+
+	@Test
+	public void testSearch() {
+
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(20);
+		ArrayList<Part> parts = new ArrayList<>();
+		parts.add(new Part("AB.1234.X", "Hex Bolt M8 Zinc", "301-Good Parts", "ZZZZ-0001", 5, 0, 5, 1.5));
+		parts.add(new Part("AB.1235.X", "Hex Nut M8", "301-Good Parts", "ZZZZ-0001", 5, 0, 5, 0.5));
+		Bin bin = new Bin("ZZZZ-0001", "301-Good Parts", parts, null);
+		bins.add(bin);
+
+		BinRegistry registry = new BinRegistry(bins, false);
+		PartSearchIndex index = registry.getSearchIndex();
+		assertEquals(bins.stream().mapToInt(b -> b.getParts().size()).sum(), index.size());
+
+		// Every part number should be found in the bin and row it's actually in
+		for (Bin b: registry.getOrderedBins()) {
+			for (Part part: b.getParts()) {
+				assertTrue(index.findPartNumber(part.getPartNumber().toLowerCase()).stream().anyMatch(location -> location.part() == part));
+			}
+		}
+
+		List<PartSearchIndex.PartLocation> found = index.search("ab.1235.x", 10);
+		assertSame(parts.get(1), found.get(0).part());
+		assertSame(bin, found.get(0).bin());
+		assertEquals(1, found.get(0).row());
+
+		// Trigram search on the description has to match the actual text, not just the trigrams in any order
+		found = index.search("HEX BOLT", 10);
+		assertEquals(1, found.size());
+		assertSame(parts.get(0), found.get(0).part());
+		assertTrue(index.search("bolt hex", 10).isEmpty());
+
+		// Short searches match the start of words
+		assertTrue(index.search("m8", 10).stream().map(PartSearchIndex.PartLocation::part).toList().containsAll(parts));
+		assertEquals(1, index.search("M8", 1).size());
+
+		// Adding a bin means the next index we ask for is a new one with that bin in it
+		registry.put(new Bin("ZZZZ-0002", "301-Good Parts", new ArrayList<>(List.of(new Part("CD.0001.Y", "Washer", "301-Good Parts", "ZZZZ-0002", 1, 0, 1, 0.1))), null));
+		assertNotSame(index, registry.getSearchIndex());
+		assertEquals(1, registry.getSearchIndex().search("washer", 10).size());
+
+		System.out.println("PartSearchIndex search PASSED");
+
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.core.SavedOngoing;
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.Part;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySnapshotTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(50);
+		int editedBin = bins.indexOf(bins.stream().filter(bin -> !bin.isEmpty()).findFirst().orElseThrow());
+		Part edited = bins.get(editedBin).getParts().get(0);
+		edited.restore(edited.getPhysicalQuantity(), 7, -3, "Found some behind the shelf");
+		
+		File file = new File(mTempDir, BinarySnapshot.FILE_NAME);
+		BinarySnapshot.write(bins, file);
+		
+		AtomicInteger read = new AtomicInteger();
+		Optional<ArrayList<Bin>> result = BinarySnapshot.read(file, read::incrementAndGet);
+		assertTrue(result.isPresent());
+		assertEquals(bins, result.get());
+		assertEquals(bins.size(), read.get());
+		assertEquals("Found some behind the shelf", result.get().get(editedBin).getParts().get(0).getComments());
+		
+		// Any single bin can be read on its own without reading the rest of the file
+		List<BinarySnapshot.IndexEntry> index = BinarySnapshot.readIndex(file);
+		assertEquals(bins.size(), index.size());
+		Bin last = bins.get(bins.size() - 1);
+		assertEquals(Optional.of(last), BinarySnapshot.readBin(file, last.getBinNum()));
+		assertTrue(BinarySnapshot.readBin(file, "NOT-A-BIN").isEmpty());
+		
+		System.out.println("BinarySnapshot round trip PASSED");
+		
+	}
+	
+	@Test
+	public void testCorruptSnapshot() throws IOException {
+		
+		File file = new File(mTempDir, BinarySnapshot.FILE_NAME);
+		BinarySnapshot.write(DebugUtils.generateTestBinData(10), file);
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long pos = raf.length() - 20;
+			raf.seek(pos);
+			int b = raf.read();
+			raf.seek(pos);
+			raf.write(b ^ 0xFF);
+		}
+		
+		assertTrue(BinarySnapshot.read(file).isEmpty());
+		
+		System.out.println("BinarySnapshot corruption check PASSED");
+		
+	}
+	
+	@Test
+	public void testLegacyJsonSession() {
+		
+		// Sessions saved before the snapshot format have a bins directory full of json instead, those still need to load
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(5);
+		File binsDir = new File(mTempDir, "bins");
+		assertTrue(binsDir.mkdirs());
+		assertTrue(new File(mTempDir, "stockstatus").mkdirs());
+		bins.forEach(bin -> FileSystemUtils.writeStringToFile(SerializationUtils.serializeBin(bin), new File(binsDir, bin.getBinNum())));
+		
+		Optional<SavedOngoing> result = FileSystemUtils.getSavedSessionFromDir(mTempDir);
+		assertTrue(result.isPresent());
+		assertEquals(bins.size(), result.get().getBins().size());
+		assertTrue(result.get().getBins().containsAll(bins));
+		
+		System.out.println("Legacy json session PASSED");
+		
+	}
+	
+}
@@ -0,0 +1,71 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.core.SavedOngoing;
+import com.cameronbarnes.mercury.stock.Bin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a whole saved session back in, at a few session sizes.
+ * The session is written the same way saveOngoing writes one, just without moving any stockstatus files into it.
+ * Run it with mvn -Pbenchmark test -Djmh.args="FileSystemUtilsBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileSystemUtilsBenchmark {
+	
+	@Param({"100", "1000", "5000"})
+	public int mNumBins;
+	
+	private File mDir;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(mNumBins);
+		mDir = Files.createTempDirectory("mercury-session-benchmark").toFile();
+		//noinspection ResultOfMethodCallIgnored
+		new File(mDir, "stockstatus").mkdirs();
+		BinarySnapshot.write(bins, new File(mDir, BinarySnapshot.FILE_NAME));
+		FileSystemUtils.writeManifest(bins, mDir);
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		FileSystemUtils.deleteDir(mDir);
+	}
+	
+	@Benchmark
+	public Optional<SavedOngoing> getSavedSessionFromDir() {
+		return FileSystemUtils.getSavedSessionFromDir(mDir);
+	}
+	
+}
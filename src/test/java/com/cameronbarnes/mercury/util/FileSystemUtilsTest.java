@@ -23,6 +23,7 @@ import com.cameronbarnes.mercury.stock.Bin;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
@@ -83,4 +84,63 @@ public class FileSystemUtilsTest {
 		
 	}
 	
-}
\ No newline at end of file
+	@Test
+	public void testSavedSessionManifest() {
+		
+		File outDir = new File("." + File.separator + "testManifestOut").getAbsoluteFile();
+		FileSystemUtils.deleteDir(outDir);
+		
+		ArrayList<Bin> bins = DebugUtils.generateTestBinData(5);
+		DebugUtils.generateTestStockStatusFiles(3, Options.PROCESS_FOLDER);
+		FileSystemUtils.saveOngoing(bins, outDir);
+		
+		// Listing the session should only read the manifest, the bins are loaded when they're asked for
+		Optional<SavedOngoing> summary = FileSystemUtils.getSavedSessionSummaryFromDir(outDir);
+		assertTrue(summary.isPresent());
+		assertFalse(summary.get().isLoaded());
+		assertEquals(3, summary.get().getNumStockStatusFiles());
+		for (Bin bin: bins) {
+			assertTrue(summary.get().toString().contains(bin.getBinNum()));
+		}
+		assertFalse(summary.get().isLoaded());
+		
+		// Comparing against another summary, or against the bins that were saved, is done with the manifest and doesn't load anything either
+		Optional<SavedOngoing> other = FileSystemUtils.getSavedSessionSummaryFromDir(outDir);
+		assertTrue(other.isPresent());
+		assertEquals(summary.get(), other.get());
+		assertEquals(new SavedOngoing(outDir, bins), summary.get());
+		assertFalse(summary.get().isLoaded());
+		assertFalse(other.get().isLoaded());
+		
+		assertEquals(bins, summary.get().getBins());
+		assertTrue(summary.get().isLoaded());
+		System.out.println("SavedOngoing manifest PASSED");
+		
+		FileSystemUtils.deleteDir(outDir);
+		
+	}
+	
+	@Test
+	@SuppressWarnings("ResultOfMethodCallIgnored")
+	public void testFailedSaveLeavesFiles() throws IOException {
+		
+		File outDir = new File("." + File.separator + "testFailedSaveOut").getAbsoluteFile();
+		FileSystemUtils.deleteDir(outDir);
+		
+		File stockstatus = new File(Options.PROCESS_FOLDER, "failedSaveTest.xlsx");
+		stockstatus.createNewFile();
+		
+		// A directory where the snapshot's temp file goes means the snapshot can't be written
+		new File(outDir, BinarySnapshot.FILE_NAME + ".tmp").mkdirs();
+		
+		assertFalse(FileSystemUtils.saveOngoing(DebugUtils.generateTestBinData(3), outDir));
+		// Nothing gets left behind that looks like a save, and the stockstatus files stay where they were
+		assertFalse(outDir.exists());
+		assertTrue(stockstatus.exists());
+		
+		stockstatus.delete();
+		System.out.println("Failed save leaves files PASSED");
+		
+	}
+	
+}
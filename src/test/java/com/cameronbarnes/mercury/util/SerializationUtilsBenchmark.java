@@ -0,0 +1,69 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.stock.Bin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a bin out as json and reads it back in, at a few bin sizes.
+ * Run it with mvn -Pbenchmark test -Djmh.args="SerializationUtilsBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationUtilsBenchmark {
+	
+	@Param({"10", "100", "1000", "10000"})
+	public int mNumParts;
+	
+	private Bin mBin;
+	private String mJson;
+	
+	@Setup
+	public void setup() {
+		
+		String binNum = DebugUtils.generateRandomBinNumber();
+		mBin = new Bin(binNum, "301-Good Parts", DebugUtils.generateTestPartList(binNum, "301-Good Parts", true, mNumParts), null);
+		mJson = SerializationUtils.serializeBin(mBin);
+		
+	}
+	
+	@Benchmark
+	public StringBuilder serializeBin() throws IOException {
+		
+		StringBuilder out = new StringBuilder(mJson.length());
+		SerializationUtils.serializeBin(mBin, out);
+		return out;
+		
+	}
+	
+	@Benchmark
+	public Optional<Bin> deserializeBin() {
+		return SerializationUtils.deserializeBin(new StringReader(mJson));
+	}
+	
+}
@@ -21,6 +21,7 @@ import com.cameronbarnes.mercury.core.Main;
 import com.cameronbarnes.mercury.core.Options;
 import com.cameronbarnes.mercury.stock.Bin;
 import com.cameronbarnes.mercury.stock.Part;
+import com.google.gson.JsonObject;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
 
@@ -128,4 +129,34 @@ public class SerializationUtilsTest {
 	
 	}
 	
+	@Test
+	public void testLegacyBinFormat() {
+		
+		List<Part> parts = DebugUtils.generateTestPartList(DebugUtils.generateRandomBinNumber(), RandomStringUtils.random(10, true, true), true, 50);
+		Bin bin = new Bin(parts.get(0).getBinNum(), parts.get(0).getWarehouse(), parts, null);
+		
+		// The parts are a real array now, not a string full of escaped quotes
+		String serialized = SerializationUtils.serializeBin(bin);
+		assertTrue(serialized.contains("\"Parts\":["));
+		assertFalse(serialized.contains("\\\""));
+		
+		// Older saves stored the part list as a json string inside the bin json, and those still need to load
+		JsonObject legacy = new JsonObject();
+		legacy.addProperty("BinNumber", bin.getBinNum());
+		legacy.addProperty("WareHouse", bin.getWarehouse());
+		legacy.addProperty("Parts", SerializationUtils.serializePartList(parts));
+		
+		Optional<Bin> out = SerializationUtils.deserializeBin(legacy.toString());
+		assertTrue(out.isPresent());
+		assertEquals(bin, out.get());
+		for (int i = 0; i < parts.size(); i++) {
+			assertEquals(parts.get(i).getComments(), out.get().getParts().get(i).getComments());
+		}
+		
+		assertTrue(SerializationUtils.deserializeBin("{\"BinNumber\": \"ABCD-0001\"}").isEmpty());
+		
+		System.out.println("Legacy Bin Serialization PASSED");
+		
+	}
+	
 }
@@ -0,0 +1,76 @@
+/*
+ *     Copyright (c) 2022.  Cameron Barnes
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cameronbarnes.mercury.util;
+
+import com.cameronbarnes.mercury.excel.ExcelImporter;
+import com.cameronbarnes.mercury.stock.Bin;
+import com.cameronbarnes.mercury.stock.BinRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockStatusGeneratorTest {
+	
+	@TempDir
+	File mTempDir;
+	
+	@Test
+	public void testGeneratedCorpusImports() throws IOException {
+		
+		StockStatusGenerator.Settings settings = new StockStatusGenerator.Settings(30, 1, 40, 0.3, 0.1, 0.5, 42);
+		StockStatusGenerator.Summary summary = StockStatusGenerator.generate(settings, mTempDir, () -> {});
+		
+		File[] files = Objects.requireNonNull(mTempDir.listFiles());
+		assertEquals(summary.numFiles(), files.length);
+		assertTrue(summary.numFiles() > summary.numBins()); // With a 30% rate we'd have to be very unlucky not to get any duplicates
+		assertTrue(summary.numMalformedRows() > 0);
+		
+		// The duplicate files should all collapse back down to one bin each, and none of the malformed rows should make it in
+		BinRegistry registry = new BinRegistry();
+		for (File file: files) {
+			Optional<Bin> bin = ExcelImporter.importBinFromStockStatusFile(file);
+			assertTrue(bin.isPresent());
+			registry.putIfNewer(bin.get());
+		}
+		assertEquals(summary.numBins(), registry.size());
+		assertEquals(summary.numParts(), registry.getNumParts());
+		
+		System.out.println("Generated stockstatus corpus PASSED");
+		
+	}
+	
+	@Test
+	public void testBinNumbersAreUnique() {
+		
+		HashSet<String> binNums = new HashSet<>();
+		for (int i = 0; i < 100000; i++) {
+			String binNum = StockStatusGenerator.binNumber(7, i);
+			assertTrue(binNum.matches("[A-Z]{4}-\\d{4}"));
+			assertTrue(binNums.add(binNum));
+		}
+		
+	}
+	
+}